@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmBenchmark {
+
+    @Benchmark
+    public Collection<Film> findAll(FilmorateState state) {
+        return state.filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Optional<Film> findById(FilmorateState state) {
+        return state.filmStorage.findById(state.randomFilmId());
+    }
+
+    @Benchmark
+    public Collection<Film> findPopular(FilmorateState state) {
+        return state.filmService.findPopular(10);
+    }
+
+    // Benchmark films are named "Film <i>", so the prefix expands to several words
+    @Benchmark
+    public List<Integer> search(FilmorateState state) {
+        return state.filmStorage.search("film " + state.randomFilmId() % 100, 10);
+    }
+
+    // Mostly new likes; a pair that is already liked measures the idempotent path
+    @Benchmark
+    public void addLike(FilmorateState state) {
+        state.ratingStorage.addLike(state.randomFilmId(), state.randomUserId());
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.database.DatabaseRatingStorage;
+import ru.yandex.practicum.filmorate.storage.film.database.RatingDao;
+import ru.yandex.practicum.filmorate.storage.user.database.FriendDao;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Application context with one storage engine, filled with {@code likes} likes.
+ * There is a film per 1000 likes and a user per 100 likes (at least 100 films and 1000 users),
+ * every user has {@link #FRIENDS_PER_USER} confirmed friends among the neighbouring user ids.
+ */
+@State(Scope.Benchmark)
+public class FilmorateState {
+    static final int FRIENDS_PER_USER = 50;
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"database", "memory"})
+    public String storage;
+
+    @Param({"1000", "100000", "1000000"})
+    public int likes;
+
+    ConfigurableApplicationContext context;
+    FilmStorage filmStorage;
+    RatingDao ratingStorage;
+    FilmService filmService;
+    UserService userService;
+    RecommendationService recommendationService;
+    int[] filmIds;
+    int[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--filmorate.storage=" + storage,
+                        "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--logging.level.root=warn",
+                        "--logging.level.ru.yandex.practicum.filmorate=warn");
+
+        filmStorage = context.getBean(FilmStorage.class);
+        ratingStorage = context.getBean(RatingDao.class);
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+        recommendationService = context.getBean(RecommendationService.class);
+
+        userIds = createUsers(Math.max(1000, likes / 100));
+        filmIds = createFilms(Math.max(100, likes / 1000));
+        createLikes();
+        createFriendships();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    int randomFilmId() {
+        return filmIds[ThreadLocalRandom.current().nextInt(filmIds.length)];
+    }
+
+    int randomUserId() {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+
+    // Neighbouring users share FRIENDS_PER_USER - 2 friends
+    int neighbourOf(int userIndex) {
+        return userIds[(userIndex + 1) % userIds.length];
+    }
+
+    private int[] createUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User(null, "user" + i + "@bench.dev", "user" + i, "User " + i,
+                    LocalDate.of(1990, 1, 1)));
+        }
+        return userService.createUsers(users).stream().mapToInt(BatchItemResult::getId).toArray();
+    }
+
+    private int[] createFilms(int count) {
+        List<Film> films = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            films.add(new Film(null, "Film " + i, "Benchmark film", LocalDate.of(2000, 1, 1), 90,
+                    new Mpa(1 + i % 5, null, null), List.of(new Genre(1 + i % 6, null)), null));
+        }
+        return filmService.createAll(films).stream().mapToInt(BatchItemResult::getId).toArray();
+    }
+
+    // Film i is liked by a contiguous run of users starting at a film-specific offset
+    private void createLikes() {
+        int likesPerFilm = likes / filmIds.length;
+        List<int[]> pairs = new ArrayList<>(likes);
+        for (int f = 0; f < filmIds.length; f++) {
+            for (int k = 0; k < likesPerFilm; k++) {
+                pairs.add(new int[]{filmIds[f], userIds[(f * 31 + k) % userIds.length]});
+            }
+        }
+
+        if (ratingStorage instanceof DatabaseRatingStorage) {
+            insertBatches("INSERT INTO \"film_user_like\" (\"film_id\", \"user_id\") VALUES (?, ?)", pairs);
+            ((DatabaseRatingStorage) ratingStorage).loadLeaderboard();
+        } else {
+            pairs.forEach(pair -> ratingStorage.addLike(pair[0], pair[1]));
+        }
+    }
+
+    private void createFriendships() {
+        List<int[]> pairs = new ArrayList<>(userIds.length * FRIENDS_PER_USER);
+        for (int u = 0; u < userIds.length; u++) {
+            for (int d = 1; d <= FRIENDS_PER_USER / 2; d++) {
+                pairs.add(new int[]{userIds[u], userIds[(u + d) % userIds.length]});
+                pairs.add(new int[]{userIds[u], userIds[(u - d + userIds.length) % userIds.length]});
+            }
+        }
+
+        if (storage.equals("database")) {
+            insertBatches("INSERT INTO \"friendship\" (\"user_id\", \"friend_id\", \"confirmed_at\") " +
+                    "VALUES (?, ?, NOW())", pairs);
+        } else {
+            FriendDao friendStorage = context.getBean(FriendDao.class);
+            for (int[] pair : pairs) {
+                friendStorage.addFriend(pair[0], pair[1]);
+                friendStorage.confirmFriendship(pair[0], pair[1]);
+            }
+        }
+    }
+
+    private void insertBatches(String sql, List<int[]> pairs) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        for (int from = 0; from < pairs.size(); from += BATCH_SIZE) {
+            List<int[]> batch = pairs.subList(from, Math.min(from + BATCH_SIZE, pairs.size()));
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setInt(1, batch.get(i)[0]);
+                    ps.setInt(2, batch.get(i)[1]);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.event.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.User;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+
+    @Benchmark
+    public Collection<User> findCommonFriends(FilmorateState state) {
+        int index = ThreadLocalRandom.current().nextInt(state.userIds.length);
+        return state.userService.findCommonFriends(state.userIds[index], state.neighbourOf(index));
+    }
+
+    // The cached entry is dropped first, so every call finds the neighbours again
+    @Benchmark
+    public Collection<Film> findRecommendations(FilmorateState state) {
+        int userId = state.randomUserId();
+        state.recommendationService.onLikeChanged(new LikeChangedEvent(0, userId, true));
+        return state.recommendationService.findRecommendations(userId, 10);
+    }
+
+    @Benchmark
+    public List<FriendSuggestion> findSuggestions(FilmorateState state) {
+        return state.userService.findSuggestions(state.randomUserId(), 10);
+    }
+
+    @Benchmark
+    public void createFriendship(FilmorateState state) {
+        int userId = state.randomUserId();
+        int friendId = state.randomUserId();
+        if (userId != friendId) {
+            state.userService.createFriendship(userId, friendId);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.metrics.SqlStatementCounter;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for one class of requests. A full queue rejects the request and a request not finished
+ * within the timeout is answered with 503, so one class can't take the threads or the latency of another.
+ * A task that waited out its timeout in the queue is removed from it without running. Timeouts are scheduled
+ * on a timer shared by the bulkheads and cancelled as soon as the request completes.
+ */
+@Slf4j
+class Bulkhead {
+    static final String METRIC_PREFIX = "filmorate.bulkhead";
+
+    private final String name;
+    private final Duration timeout;
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService timer;
+    private final Timer queueWait;
+    private final Counter rejected;
+    private final Counter timedOut;
+
+    Bulkhead(String name, int threads, int queueCapacity, Duration timeout, ScheduledExecutorService timer,
+             MeterRegistry registry) {
+        this.name = name;
+        this.timeout = timeout;
+        this.timer = timer;
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "bulkhead-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        new ExecutorServiceMetrics(pool, name, METRIC_PREFIX, Tags.empty()).bindTo(registry);
+        this.queueWait = registry.timer(METRIC_PREFIX + ".queue.wait", "name", name);
+        this.rejected = registry.counter(METRIC_PREFIX + ".rejected", "name", name);
+        this.timedOut = registry.counter(METRIC_PREFIX + ".timeouts", "name", name);
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long submittedAt = System.nanoTime();
+        Runnable execution = SqlStatementCounter.propagate(() -> {
+            queueWait.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            if (result.isDone()) {
+                return;
+            }
+            // An error must answer the request too, otherwise it waits for the timeout and reads as overload
+            try {
+                result.complete(task.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        try {
+            pool.execute(execution);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Bulkhead {} rejected a request, its queue is full", name);
+            throw new ServiceUnavailableException("Too many " + name + " requests, try again later");
+        }
+
+        ScheduledFuture<?> expiry = timer.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            // Frees the queue slot before the caller learns of the timeout, a running task is left to finish
+            pool.remove(execution);
+            if (result.completeExceptionally(new ServiceUnavailableException("The " + name
+                    + " request took longer than " + timeout.toMillis() + " ms"))) {
+                timedOut.increment();
+                log.warn("Bulkhead {} request took longer than {} ms", name, timeout.toMillis());
+            }
+        }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        // Drops the timer's references to the request once it is answered
+        result.whenComplete((value, error) -> expiry.cancel(false));
+        return result;
+    }
+
+    CompletableFuture<Void> run(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // Running writes are not interrupted, an interrupt would close the journal channel under them
+    void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Bulkhead {} did not finish its requests in time", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Separate pools for the request classes of the film and user endpoints: catalogue scans (pages,
+ * popular films, friend lists), point reads by id and writes. Reference data is served from memory
+ * on the servlet threads and needs no pool.
+ */
+@Component
+class Bulkheads {
+    private final Bulkhead scans;
+    private final Bulkhead pointReads;
+    private final Bulkhead writes;
+    // One thread for the timeouts of all bulkheads, cancelled timeouts leave its queue at once
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "bulkhead-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    Bulkheads(MeterRegistry registry,
+              @Value("${filmorate.bulkhead.scans.threads}") int scanThreads,
+              @Value("${filmorate.bulkhead.scans.queue-capacity}") int scanQueueCapacity,
+              @Value("${filmorate.bulkhead.scans.timeout}") Duration scanTimeout,
+              @Value("${filmorate.bulkhead.point-reads.threads}") int pointReadThreads,
+              @Value("${filmorate.bulkhead.point-reads.queue-capacity}") int pointReadQueueCapacity,
+              @Value("${filmorate.bulkhead.point-reads.timeout}") Duration pointReadTimeout,
+              @Value("${filmorate.bulkhead.writes.threads}") int writeThreads,
+              @Value("${filmorate.bulkhead.writes.queue-capacity}") int writeQueueCapacity,
+              @Value("${filmorate.bulkhead.writes.timeout}") Duration writeTimeout) {
+        timer.setRemoveOnCancelPolicy(true);
+        this.scans = new Bulkhead("scans", scanThreads, scanQueueCapacity, scanTimeout, timer, registry);
+        this.pointReads = new Bulkhead("point-reads", pointReadThreads, pointReadQueueCapacity, pointReadTimeout,
+                timer, registry);
+        this.writes = new Bulkhead("writes", writeThreads, writeQueueCapacity, writeTimeout, timer, registry);
+    }
+
+    Bulkhead scans() {
+        return scans;
+    }
+
+    Bulkhead pointReads() {
+        return pointReads;
+    }
+
+    Bulkhead writes() {
+        return writes;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scans.shutdown();
+        pointReads.shutdown();
+        writes.shutdown();
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import java.util.function.Supplier;
+
+final class ConditionalResponse {
+    private ConditionalResponse() {
+    }
+
+    // A matching If-None-Match is answered with 304 before the body is loaded or serialized
+    static <T> ResponseEntity<T> of(WebRequest request, String eTag, Supplier<T> body) {
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(body.get());
+    }
+}
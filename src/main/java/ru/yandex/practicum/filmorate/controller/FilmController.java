@@ -1,63 +1,100 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import javax.validation.Valid;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.PopularityFilter;
+import ru.yandex.practicum.filmorate.storage.film.TrendingWindow;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService filmService;
+    private final Bulkheads bulkheads;
     private static final String DEFAULT_POPULAR_COUNT = "10";
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, Bulkheads bulkheads) {
         this.filmService = filmService;
+        this.bulkheads = bulkheads;
     }
 
     @GetMapping
-    public Collection<Film> findAll() {
-        return filmService.findAll();
+    public CompletableFuture<ResponseEntity<List<Film>>> findAll(@RequestParam(defaultValue = "0") int after,
+                                                                 @RequestParam(required = false) Integer limit) {
+        return bulkheads.scans().submit(() -> KeysetPageResponse.of(filmService.findPage(after, limit)));
     }
 
     @GetMapping("/{filmId}")
-    public Film findById(@PathVariable int filmId) {
-        return filmService.findById(filmId);
+    public CompletableFuture<ResponseEntity<Film>> findById(@PathVariable int filmId, WebRequest request) {
+        return bulkheads.pointReads().submit(() -> ConditionalResponse.of(request, filmService.findVersionTag(filmId),
+                () -> filmService.findById(filmId)));
     }
 
     @GetMapping("/popular")
-    public Collection<Film> findPopular(@RequestParam(defaultValue = DEFAULT_POPULAR_COUNT) int count) {
-        return filmService.findPopular(count);
+    public CompletableFuture<Collection<Film>> findPopular(@RequestParam(defaultValue = DEFAULT_POPULAR_COUNT)
+                                                           int count,
+                                                           @RequestParam(required = false) String window,
+                                                           @RequestParam(required = false) Integer genreId,
+                                                           @RequestParam(required = false) Integer mpaId,
+                                                           @RequestParam(required = false) Integer year) {
+        PopularityFilter filter = new PopularityFilter(genreId, mpaId, year);
+        if (window == null) {
+            return bulkheads.scans().submit(() -> filmService.findPopular(count, filter));
+        }
+        if (!filter.isEmpty()) {
+            throw new ValidationException("Trending films can't be filtered by genre, MPA or year");
+        }
+
+        TrendingWindow trendingWindow = TrendingWindow.of(window);
+        return bulkheads.scans().submit(() -> filmService.findTrending(trendingWindow, count));
+    }
+
+    // Answered from the in-memory search index, so it runs with the point reads
+    @GetMapping("/search")
+    public CompletableFuture<Collection<Film>> search(@RequestParam String q,
+                                                      @RequestParam(required = false) Integer limit) {
+        return bulkheads.pointReads().submit(() -> filmService.search(q, limit));
     }
 
     @PostMapping
-    public Film create(@Valid @RequestBody Film film, BindingResult errors) {
+    public CompletableFuture<Film> create(@Valid @RequestBody Film film, BindingResult errors) {
         if (errors.hasErrors()) {
             throw new ValidationException(errors.toString());
         }
-        return filmService.create(film);
+        return bulkheads.writes().submit(() -> filmService.create(film));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<List<BatchItemResult>> createAll(@RequestBody List<Film> films) {
+        return bulkheads.writes().submit(() -> filmService.createAll(films));
     }
 
     @PutMapping
-    public Film update(@Valid @RequestBody Film film, BindingResult errors) {
+    public CompletableFuture<Film> update(@Valid @RequestBody Film film, BindingResult errors) {
         if (errors.hasErrors()) {
             throw new ValidationException(errors.toString());
         }
-        return filmService.update(film);
+        return bulkheads.writes().submit(() -> filmService.update(film));
     }
 
     @PutMapping("/{id}/like/{userId}")
-    public void addLike(@PathVariable int id, @PathVariable int userId) {
-        filmService.addLike(id, userId);
+    public CompletableFuture<Void> addLike(@PathVariable int id, @PathVariable int userId) {
+        return bulkheads.writes().run(() -> filmService.addLike(id, userId));
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    public void removeLike(@PathVariable int id, @PathVariable int userId) {
-        filmService.removeLike(id, userId);
+    public CompletableFuture<Void> removeLike(@PathVariable int id, @PathVariable int userId) {
+        return bulkheads.writes().run(() -> filmService.removeLike(id, userId));
     }
 }
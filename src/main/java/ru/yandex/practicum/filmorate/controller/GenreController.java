@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 import java.util.Collection;
@@ -17,12 +19,12 @@ public class GenreController {
     }
 
     @GetMapping
-    public Collection<Genre> findAll() {
-        return genreService.findAll();
+    public ResponseEntity<Collection<Genre>> findAll(WebRequest request) {
+        return ConditionalResponse.of(request, genreService.findVersionTag(), genreService::findAll);
     }
 
     @GetMapping("/{genreId}")
-    public Genre findById(@PathVariable int genreId) {
-        return genreService.findById(genreId);
+    public ResponseEntity<Genre> findById(@PathVariable int genreId, WebRequest request) {
+        return ConditionalResponse.of(request, genreService.findVersionTag(), () -> genreService.findById(genreId));
     }
 }
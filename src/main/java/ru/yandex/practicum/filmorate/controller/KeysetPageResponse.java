@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
+import java.util.List;
+
+final class KeysetPageResponse {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private KeysetPageResponse() {
+    }
+
+    static <T> ResponseEntity<List<T>> of(KeysetPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+}
@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.MpaService;
 import java.util.Collection;
@@ -17,12 +19,12 @@ public class MpaController {
     }
 
     @GetMapping
-    public Collection<Mpa> findAll() {
-        return mpaService.findAll();
+    public ResponseEntity<Collection<Mpa>> findAll(WebRequest request) {
+        return ConditionalResponse.of(request, mpaService.findVersionTag(), mpaService::findAll);
     }
 
     @GetMapping("/{mpaId}")
-    public Mpa findById(@PathVariable int mpaId) {
-        return mpaService.findById(mpaId);
+    public ResponseEntity<Mpa> findById(@PathVariable int mpaId, WebRequest request) {
+        return ConditionalResponse.of(request, mpaService.findVersionTag(), () -> mpaService.findById(mpaId));
     }
 }
@@ -1,67 +1,119 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import javax.validation.Valid;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final FeedService feedService;
+    private final Bulkheads bulkheads;
+    private static final String DEFAULT_RECOMMENDATIONS_COUNT = "10";
+    private static final String DEFAULT_SUGGESTIONS_COUNT = "10";
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService,
+                          FeedService feedService, Bulkheads bulkheads) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.feedService = feedService;
+        this.bulkheads = bulkheads;
     }
 
     @GetMapping
-    public Collection<User> findAll() {
-        return userService.findAll();
+    public CompletableFuture<ResponseEntity<List<User>>> findAll(@RequestParam(defaultValue = "0") int after,
+                                                                 @RequestParam(required = false) Integer limit) {
+        return bulkheads.scans().submit(() -> KeysetPageResponse.of(userService.findPage(after, limit)));
     }
 
     @GetMapping("/{id}")
-    public User findById(@PathVariable int id) {
-        return userService.findById(id);
+    public CompletableFuture<User> findById(@PathVariable int id) {
+        return bulkheads.pointReads().submit(() -> userService.findById(id));
     }
 
     @GetMapping("/{id}/friends")
-    public Collection<User> findFriends(@PathVariable int id) {
-        return userService.findFriends(id);
+    public CompletableFuture<ResponseEntity<List<User>>> findFriends(@PathVariable int id,
+                                                                     @RequestParam(defaultValue = "0") int after,
+                                                                     @RequestParam(required = false) Integer limit) {
+        return bulkheads.scans().submit(() -> KeysetPageResponse.of(userService.findFriends(id, after, limit)));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public Collection<User> findCommonFriends(@PathVariable int id, @PathVariable int otherId) {
-        return userService.findCommonFriends(id, otherId);
+    public CompletableFuture<Collection<User>> findCommonFriends(@PathVariable int id, @PathVariable int otherId) {
+        return bulkheads.scans().submit(() -> userService.findCommonFriends(id, otherId));
+    }
+
+    @GetMapping("/{id}/friends/common/{otherId}/count")
+    public CompletableFuture<Integer> countCommonFriends(@PathVariable int id, @PathVariable int otherId) {
+        return bulkheads.scans().submit(() -> userService.countCommonFriends(id, otherId));
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public CompletableFuture<Collection<Film>> findRecommendations(@PathVariable int id,
+                                                                   @RequestParam(defaultValue =
+                                                                           DEFAULT_RECOMMENDATIONS_COUNT) int count) {
+        return bulkheads.scans().submit(() -> recommendationService.findRecommendations(id, count));
+    }
+
+    @GetMapping("/{id}/suggestions")
+    public CompletableFuture<List<FriendSuggestion>> findSuggestions(@PathVariable int id,
+                                                                     @RequestParam(defaultValue =
+                                                                             DEFAULT_SUGGESTIONS_COUNT) int count) {
+        return bulkheads.scans().submit(() -> userService.findSuggestions(id, count));
+    }
+
+    @GetMapping("/{id}/feed")
+    public CompletableFuture<ResponseEntity<List<FeedEvent>>> findFeed(@PathVariable int id,
+                                                                       @RequestParam(required = false) Integer before,
+                                                                       @RequestParam(required = false) Integer limit) {
+        return bulkheads.pointReads().submit(() -> KeysetPageResponse.of(feedService.findFeed(id, before, limit)));
     }
 
     @PostMapping
-    public User create(@Valid @RequestBody User user, BindingResult errors) {
+    public CompletableFuture<User> create(@Valid @RequestBody User user, BindingResult errors) {
         if (errors.hasErrors()) {
             throw new ValidationException(errors.toString());
         }
-        return userService.createUser(user);
+        return bulkheads.writes().submit(() -> userService.createUser(user));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<List<BatchItemResult>> createAll(@RequestBody List<User> users) {
+        return bulkheads.writes().submit(() -> userService.createUsers(users));
     }
 
     @PutMapping
-    public User update(@Valid @RequestBody User user, BindingResult errors) {
+    public CompletableFuture<User> update(@Valid @RequestBody User user, BindingResult errors) {
         if (errors.hasErrors()) {
             throw new ValidationException(errors.toString());
         }
-        return userService.updateUser(user);
+        return bulkheads.writes().submit(() -> userService.updateUser(user));
     }
 
     @PutMapping("/{id}/friends/{friendId}")
-    public void createFriends(@PathVariable int id, @PathVariable int friendId) {
-        userService.createFriendship(id, friendId);
+    public CompletableFuture<Void> createFriends(@PathVariable int id, @PathVariable int friendId) {
+        return bulkheads.writes().run(() -> userService.createFriendship(id, friendId));
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
-    public void removeFriends(@PathVariable int id, @PathVariable int friendId) {
-        userService.removeFriendship(id, friendId);
+    public CompletableFuture<Void> removeFriends(@PathVariable int id, @PathVariable int friendId) {
+        return bulkheads.writes().run(() -> userService.removeFriendship(id, friendId));
     }
 }
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Data;
+
+/**
+ * Published by UserService after the user has confirmed or lost the friend.
+ */
+@Data
+public class FriendshipChangedEvent {
+    private final int userId;
+    private final int friendId;
+    private final boolean added;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Data;
+
+/**
+ * Published by FilmService after a like was actually added or removed, repeated likes publish nothing.
+ */
+@Data
+public class LikeChangedEvent {
+    private final int filmId;
+    private final int userId;
+    private final boolean liked;
+}
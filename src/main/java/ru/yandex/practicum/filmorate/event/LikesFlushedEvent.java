@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Data;
+import java.util.Set;
+
+/**
+ * Published after buffered like changes of the films have been written to the database.
+ */
+@Data
+public class LikesFlushedEvent {
+    private final Set<Integer> filmIds;
+}
@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.database.DatabaseRatingStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import ru.yandex.practicum.filmorate.storage.user.database.impl.DatabaseFriendStorage;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Fills the database with a synthetic dataset on startup of the "generate" profile.
+ * Film popularity follows a Zipf distribution, friend counts follow a power law.
+ * The same seed on an empty database always produces the same rows. Likes and friendships are written
+ * around the storages, so the in-memory indexes built from them at startup are loaded again afterwards.
+ */
+@Component
+@Profile("generate")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "database", matchIfMissing = true)
+@Slf4j
+public class DatasetGenerator implements ApplicationRunner {
+    private static final String SQL_INSERT_LIKE = "INSERT INTO \"film_user_like\" (\"film_id\", \"user_id\") " +
+            "VALUES (?, ?)";
+    // Both sides of a friendship may pick each other, MERGE keeps a single row per direction
+    private static final String SQL_MERGE_FRIENDSHIP = "MERGE INTO \"friendship\" " +
+            "(\"user_id\", \"friend_id\", \"confirmed_at\") KEY (\"user_id\", \"friend_id\") VALUES (?, ?, NOW())";
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int MAX_ATTEMPTS_PER_ROW = 20;
+    private static final LocalDate FIRST_RELEASE_DATE = LocalDate.of(1950, 1, 1);
+    private static final LocalDate FIRST_BIRTHDAY = LocalDate.of(1950, 1, 1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserDao userStorage;
+    private final FilmStorage filmStorage;
+    private final DatabaseRatingStorage ratingStorage;
+    private final DatabaseFriendStorage friendStorage;
+    private final List<Genre> genres;
+    private final List<Mpa> mpas;
+    private final long seed;
+    private final int userCount;
+    private final int filmCount;
+    private final int likeCount;
+    private final double likeExponent;
+    private final double friendshipExponent;
+    private final int minFriends;
+    private final int maxFriends;
+
+    @Autowired
+    public DatasetGenerator(JdbcTemplate jdbcTemplate, UserDao userStorage, FilmStorage filmStorage,
+                            DatabaseRatingStorage ratingStorage, DatabaseFriendStorage friendStorage,
+                            GenreStorage genreStorage, MpaStorage mpaStorage,
+                            @Value("${filmorate.generator.seed}") long seed,
+                            @Value("${filmorate.generator.users}") int userCount,
+                            @Value("${filmorate.generator.films}") int filmCount,
+                            @Value("${filmorate.generator.likes}") int likeCount,
+                            @Value("${filmorate.generator.like-exponent}") double likeExponent,
+                            @Value("${filmorate.generator.friendship-exponent}") double friendshipExponent,
+                            @Value("${filmorate.generator.min-friends}") int minFriends,
+                            @Value("${filmorate.generator.max-friends}") int maxFriends) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.ratingStorage = ratingStorage;
+        this.friendStorage = friendStorage;
+        this.genres = new ArrayList<>(genreStorage.findAll());
+        this.mpas = new ArrayList<>(mpaStorage.findAll());
+        this.seed = seed;
+        this.userCount = userCount;
+        this.filmCount = filmCount;
+        this.likeCount = likeCount;
+        this.likeExponent = likeExponent;
+        this.friendshipExponent = friendshipExponent;
+        this.minFriends = minFriends;
+        this.maxFriends = maxFriends;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        generate();
+    }
+
+    public void generate() {
+        if (userCount <= 0 || filmCount <= 0) {
+            throw new IllegalArgumentException("Dataset needs at least one user and one film, got users: "
+                    + userCount + ", films: " + filmCount);
+        }
+
+        Random random = new Random(seed);
+        log.info("Generating dataset with seed {}: {} users, {} films, {} likes", seed, userCount, filmCount,
+                likeCount);
+
+        int[] userIds = generateUsers(random);
+        int[] filmIds = generateFilms(random);
+        long likes = generateLikes(random, userIds, filmIds);
+        long friendships = generateFriendships(random, userIds);
+        reloadIndexes();
+
+        log.info("Dataset generated: {} users, {} films, {} likes, {} friendship rows merged", userIds.length,
+                filmIds.length, likes, friendships);
+    }
+
+    // Users and films go through the storages, which index them as they are created.
+    // Friendships reload both the follower index and the friend graph behind the suggestions
+    private void reloadIndexes() {
+        ratingStorage.loadLeaderboard();
+        friendStorage.loadFriendships();
+    }
+
+    private int[] generateUsers(Random random) {
+        int[] ids = new int[userCount];
+        for (int from = 0; from < userCount; from += BATCH_SIZE) {
+            List<User> users = new ArrayList<>();
+            for (int i = from; i < Math.min(from + BATCH_SIZE, userCount); i++) {
+                users.add(new User(null, "user" + i + "@filmorate.dev", "user" + i, "User " + i,
+                        FIRST_BIRTHDAY.plusDays(random.nextInt(20_000))));
+            }
+
+            userStorage.createAll(users);
+            for (int i = 0; i < users.size(); i++) {
+                ids[from + i] = users.get(i).getId();
+            }
+        }
+        return ids;
+    }
+
+    private int[] generateFilms(Random random) {
+        int[] ids = new int[filmCount];
+        for (int from = 0; from < filmCount; from += BATCH_SIZE) {
+            List<Film> films = new ArrayList<>();
+            for (int i = from; i < Math.min(from + BATCH_SIZE, filmCount); i++) {
+                List<Genre> filmGenres = new ArrayList<>();
+                int genreCount = 1 + random.nextInt(Math.min(3, genres.size()));
+                for (int g = 0; g < genreCount; g++) {
+                    filmGenres.add(genres.get(random.nextInt(genres.size())));
+                }
+
+                films.add(new Film(null, "Film " + i, "Synthetic film number " + i,
+                        FIRST_RELEASE_DATE.plusDays(random.nextInt(27_000)), 60 + random.nextInt(120),
+                        mpas.get(random.nextInt(mpas.size())), filmGenres, null));
+            }
+
+            filmStorage.createAll(films);
+            for (int i = 0; i < films.size(); i++) {
+                ids[from + i] = films.get(i).getId();
+            }
+        }
+
+        // Popularity rank is independent of the id order
+        shuffle(ids, random);
+        return ids;
+    }
+
+    // Likes are spread evenly over users, each like picks a film by its Zipf popularity rank
+    private long generateLikes(Random random, int[] userIds, int[] filmIdsByRank) {
+        ZipfDistribution popularity = new ZipfDistribution(filmIdsByRank.length, likeExponent);
+        BatchWriter writer = new BatchWriter(SQL_INSERT_LIKE);
+        Set<Integer> likedFilms = new HashSet<>();
+
+        for (int u = 0; u < userIds.length; u++) {
+            int userLikes = likeCount / userIds.length + (u < likeCount % userIds.length ? 1 : 0);
+            userLikes = Math.min(userLikes, filmIdsByRank.length);
+
+            likedFilms.clear();
+            for (int attempt = 0; likedFilms.size() < userLikes && attempt < userLikes * MAX_ATTEMPTS_PER_ROW;
+                 attempt++) {
+                int filmId = filmIdsByRank[popularity.sample(random)];
+                if (likedFilms.add(filmId)) {
+                    writer.add(filmId, userIds[u]);
+                }
+            }
+        }
+        return writer.flush();
+    }
+
+    // Friend counts are drawn from a power law; friends are picked by a Zipf rank, so some users are hubs
+    private long generateFriendships(Random random, int[] userIds) {
+        if (userIds.length < 2 || maxFriends <= 0) {
+            return 0;
+        }
+
+        int[] userIdsByRank = userIds.clone();
+        shuffle(userIdsByRank, random);
+        ZipfDistribution attractiveness = new ZipfDistribution(userIdsByRank.length, 1.0);
+        BatchWriter writer = new BatchWriter(SQL_MERGE_FRIENDSHIP);
+        Set<Integer> friends = new HashSet<>();
+
+        for (int userId : userIds) {
+            int degree = powerLaw(random, minFriends, friendshipExponent);
+            degree = Math.min(degree, Math.min(maxFriends, userIds.length - 1));
+
+            friends.clear();
+            for (int attempt = 0; friends.size() < degree && attempt < degree * MAX_ATTEMPTS_PER_ROW; attempt++) {
+                int friendId = userIdsByRank[attractiveness.sample(random)];
+                if (friendId != userId && friends.add(friendId)) {
+                    writer.add(userId, friendId);
+                    writer.add(friendId, userId);
+                }
+            }
+        }
+        return writer.flush();
+    }
+
+    // Inverse transform of a continuous Pareto distribution with the given minimum
+    private static int powerLaw(Random random, int min, double exponent) {
+        double value = Math.max(min, 1) * Math.pow(1 - random.nextDouble(), -1 / (exponent - 1));
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    private static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private final class BatchWriter {
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        private long written;
+
+        private BatchWriter(String sql) {
+            this.sql = sql;
+        }
+
+        private void add(int first, int second) {
+            rows.add(new Object[]{first, second});
+            if (rows.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private long flush() {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                written += rows.size();
+                rows.clear();
+                log.debug("{} rows written by {}", written, sql);
+            }
+            return written;
+        }
+    }
+}
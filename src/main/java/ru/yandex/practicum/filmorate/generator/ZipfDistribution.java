@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf distribution over ranks 0..size-1: rank k is drawn with probability proportional to 1 / (k + 1)^exponent.
+ * Sampling is a binary search over the precomputed cumulative weights.
+ */
+public class ZipfDistribution {
+    private final double[] cumulative;
+
+    public ZipfDistribution(int size, double exponent) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Zipf distribution size must be positive, got: " + size);
+        }
+
+        cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+    }
+
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public method of the services and storages.
+ * Tags: the implementing class, the method and the thrown exception ("none" on success),
+ * so the timer count doubles as a call and error counter. Endpoints are timed by Spring as http.server.requests.
+ */
+@Aspect
+@Component
+public class MethodMetricsAspect {
+    public static final String SERVICE_TIMER = "filmorate.service";
+    public static final String STORAGE_TIMER = "filmorate.storage";
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public MethodMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Pointcut("execution(public * ru.yandex.practicum.filmorate.service..*.*(..))")
+    public void serviceMethod() {
+    }
+
+    @Pointcut("execution(public * ru.yandex.practicum.filmorate.storage.film.FilmStorage+.*(..))" +
+            " || execution(public * ru.yandex.practicum.filmorate.storage.film.database.RatingDao+.*(..))" +
+            " || execution(public * ru.yandex.practicum.filmorate.storage.user.FriendStorage+.*(..))" +
+            " || execution(public * ru.yandex.practicum.filmorate.storage.user.database.UserDao+.*(..))" +
+            " || execution(public * ru.yandex.practicum.filmorate.storage.genre.GenreStorage+.*(..))" +
+            " || execution(public * ru.yandex.practicum.filmorate.storage.mpa.MpaStorage+.*(..))")
+    public void storageMethod() {
+    }
+
+    @Around("serviceMethod()")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_TIMER, joinPoint);
+    }
+
+    @Around("storageMethod()")
+    public Object timeStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(STORAGE_TIMER, joinPoint);
+    }
+
+    private Object time(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(name)
+                    .tag("class", joinPoint.getTarget().getClass().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts SQL statements run while serving a request and reports the count in a response header.
+ * The header has to be set before the body commits the response, so the wrapper adds it on the first write.
+ * An async request is counted across its initial dispatch, the executor running it and the async dispatch
+ * that writes the response.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.debug.sql-statement-header", havingValue = "true")
+@Slf4j
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+    public static final String SQL_STATEMENT_COUNT_HEADER = "X-Sql-Statement-Count";
+    private static final String COUNT_ATTRIBUTE = SqlStatementCountFilter.class.getName() + ".count";
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CountHeaderResponse countingResponse = new CountHeaderResponse(response);
+        Object startedCount = isAsyncDispatch(request) ? request.getAttribute(COUNT_ATTRIBUTE) : null;
+        SqlStatementCounter.Count count = startedCount instanceof SqlStatementCounter.Count
+                ? SqlStatementCounter.resume((SqlStatementCounter.Count) startedCount)
+                : SqlStatementCounter.start();
+        request.setAttribute(COUNT_ATTRIBUTE, count);
+        try {
+            chain.doFilter(request, countingResponse);
+            if (!request.isAsyncStarted()) {
+                countingResponse.writeCountHeader();
+            }
+        } finally {
+            int statements = SqlStatementCounter.stop();
+            if (!request.isAsyncStarted()) {
+                log.debug("{} {} ran {} SQL statements", request.getMethod(), request.getRequestURI(), statements);
+            }
+        }
+    }
+
+    private static final class CountHeaderResponse extends HttpServletResponseWrapper {
+        private boolean headerWritten;
+
+        private CountHeaderResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        private void writeCountHeader() {
+            if (!headerWritten && !isCommitted()) {
+                setHeader(SQL_STATEMENT_COUNT_HEADER, String.valueOf(SqlStatementCounter.count()));
+            }
+            headerWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeCountHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeCountHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeCountHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeCountHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeCountHeader();
+            super.sendError(sc, msg);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+/**
+ * Counts JDBC statements executed by the current thread between {@link #start()} and {@link #stop()}.
+ * A batch is one statement: it is a single round trip to the database.
+ * An async request counts on several threads one after another, see {@link #resume} and {@link #propagate}.
+ */
+public final class SqlStatementCounter {
+    private static final ThreadLocal<Count> COUNT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static Count start() {
+        return resume(new Count());
+    }
+
+    // Continues a count started on another thread
+    public static Count resume(Count count) {
+        COUNT.set(count);
+        return count;
+    }
+
+    public static int stop() {
+        int count = count();
+        COUNT.remove();
+        return count;
+    }
+
+    public static int count() {
+        Count count = COUNT.get();
+        return count == null ? 0 : count.value;
+    }
+
+    // Statements of the task count towards the count of the submitting thread, if it has one
+    public static Runnable propagate(Runnable task) {
+        Count count = COUNT.get();
+        if (count == null) {
+            return task;
+        }
+
+        return () -> {
+            Count previous = COUNT.get();
+            COUNT.set(count);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    COUNT.remove();
+                } else {
+                    COUNT.set(previous);
+                }
+            }
+        };
+    }
+
+    static void increment() {
+        Count count = COUNT.get();
+        if (count != null) {
+            count.value++;
+        }
+    }
+
+    // Used by one thread at a time, handing it over to an executor or an async dispatch orders the updates
+    public static final class Count {
+        private int value;
+    }
+}
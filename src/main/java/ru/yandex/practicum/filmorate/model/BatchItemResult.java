@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.util.Collections;
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    private final int index;
+    private final Status status;
+    private final Integer id;
+    private final List<String> errors;
+
+    public static BatchItemResult created(int index, Integer id) {
+        return new BatchItemResult(index, Status.CREATED, id, null);
+    }
+
+    public static BatchItemResult rejected(int index, List<String> errors) {
+        return new BatchItemResult(index, Status.REJECTED, null, Collections.unmodifiableList(errors));
+    }
+
+    public enum Status {
+        CREATED,
+        REJECTED
+    }
+}
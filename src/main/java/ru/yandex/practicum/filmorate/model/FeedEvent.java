@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+/**
+ * Something a user did that shows up in the feeds of those who have the user as a friend: a film liked
+ * or a friend added, entityId is the film or the friend. Ids grow with time and serve as the feed cursor.
+ */
+@Data
+public class FeedEvent {
+    private final int eventId;
+    private final long timestamp;
+    private final int userId;
+    private final FeedEventType eventType;
+    private final int entityId;
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+@Data
+public class FriendSuggestion {
+    private final int userId;
+    private final int mutualFriends;
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+public class KeysetPage<T> {
+    private final List<T> items;
+    private final Integer nextCursor;
+
+    // Storages fetch one extra row to find out whether there is a next page
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, Integer> idExtractor) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, idExtractor.apply(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.FriendshipChangedEvent;
+import ru.yandex.practicum.filmorate.event.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
+import ru.yandex.practicum.filmorate.storage.user.Timeline;
+import ru.yandex.practicum.filmorate.storage.user.database.FriendDao;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recent likes and new friends of the users one has as confirmed friends. An event is pushed into the inbox
+ * of every such follower when it happens, so reading a feed only merges ready timelines. Users with more
+ * followers than the celebrity threshold keep their events in their own outbox instead, which their followers
+ * merge into the feed when reading it. Once a celebrity, a user stays one.
+ * <p>
+ * Timelines live in memory only: feeds start empty after a restart and an event delivered to a follower
+ * stays in the follower's inbox after the friendship ends.
+ */
+@Service
+@Slf4j
+public class FeedService {
+    private final FriendDao friendStorage;
+    private final UserDao userStorage;
+    private final int capacity;
+    private final int celebrityFollowers;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final AtomicInteger eventIds = new AtomicInteger();
+    private final ConcurrentMap<Integer, Timeline> inboxes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Timeline> outboxes = new ConcurrentHashMap<>();
+    // Follower id -> ids of the celebrities the follower has as friends
+    private final ConcurrentMap<Integer, Set<Integer>> celebrityFriends = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FeedService(FriendDao friendStorage, UserDao userStorage,
+                       @Value("${filmorate.feed.capacity}") int capacity,
+                       @Value("${filmorate.feed.celebrity-followers}") int celebrityFollowers,
+                       @Value("${filmorate.page.default-size}") int defaultPageSize,
+                       @Value("${filmorate.page.max-size}") int maxPageSize) {
+        this.friendStorage = friendStorage;
+        this.userStorage = userStorage;
+        this.capacity = capacity;
+        this.celebrityFollowers = celebrityFollowers;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public KeysetPage<FeedEvent> findFeed(int userId, Integer beforeId, Integer limit) {
+        if (!userStorage.exists(userId)) {
+            throw new ObjectNotFoundException("User with id: " + userId + " not found!");
+        }
+        int before = beforeId == null ? Integer.MAX_VALUE : beforeId;
+        int pageSize = getPageSize(limit);
+
+        // Every timeline gives at most a page and one more event, newest first
+        List<List<FeedEvent>> sources = new ArrayList<>();
+        Timeline inbox = inboxes.get(userId);
+        if (inbox != null) {
+            sources.add(inbox.newest(before, pageSize + 1));
+        }
+        for (Integer celebrityId : celebrityFriends.getOrDefault(userId, Set.of())) {
+            sources.add(outboxes.get(celebrityId).newest(before, pageSize + 1));
+        }
+
+        return KeysetPage.of(merge(sources, pageSize + 1), pageSize, FeedEvent::getEventId);
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        if (event.isLiked()) {
+            publish(event.getUserId(), FeedEventType.LIKE, event.getFilmId());
+        }
+    }
+
+    @EventListener
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        if (!event.isAdded()) {
+            Set<Integer> celebrities = celebrityFriends.get(event.getUserId());
+            if (celebrities != null) {
+                celebrities.remove(event.getFriendId());
+            }
+            return;
+        }
+
+        // The friend storage already counts the user as a follower, so a concurrent promotion either sees
+        // the user among the followers or has already put the friend's outbox in place
+        if (outboxes.containsKey(event.getFriendId())) {
+            celebrityFriends.computeIfAbsent(event.getUserId(), id -> ConcurrentHashMap.newKeySet())
+                    .add(event.getFriendId());
+        }
+        publish(event.getUserId(), FeedEventType.FRIEND, event.getFriendId());
+    }
+
+    private void publish(int userId, FeedEventType type, int entityId) {
+        FeedEvent event = new FeedEvent(eventIds.incrementAndGet(), System.currentTimeMillis(), userId, type,
+                entityId);
+
+        Timeline outbox = outboxes.get(userId);
+        if (outbox == null && friendStorage.countFollowers(userId) > celebrityFollowers) {
+            outbox = promote(userId);
+        }
+        if (outbox != null) {
+            outbox.add(event);
+            return;
+        }
+
+        for (int followerId : friendStorage.findFollowers(userId)) {
+            inboxes.computeIfAbsent(followerId, id -> new Timeline(capacity)).add(event);
+        }
+    }
+
+    private Timeline promote(int userId) {
+        Timeline outbox = new Timeline(capacity);
+        Timeline existing = outboxes.putIfAbsent(userId, outbox);
+        if (existing != null) {
+            return existing;
+        }
+
+        int[] followers = friendStorage.findFollowers(userId);
+        for (int followerId : followers) {
+            celebrityFriends.computeIfAbsent(followerId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+        log.debug("User with id:{} has {} followers, the feed reads the user's events on demand", userId,
+                followers.length);
+        return outbox;
+    }
+
+    // Newest count events of the newest-first lists
+    private static List<FeedEvent> merge(List<List<FeedEvent>> sources, int count) {
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+
+        // Heads of the lists as {list, position}, the newest event on top
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.<int[]>comparingInt(
+                head -> sources.get(head[0]).get(head[1]).getEventId()).reversed());
+        for (int i = 0; i < sources.size(); i++) {
+            if (!sources.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        List<FeedEvent> result = new ArrayList<>();
+        while (!heads.isEmpty() && result.size() < count) {
+            int[] head = heads.poll();
+            List<FeedEvent> source = sources.get(head[0]);
+            result.add(source.get(head[1]));
+            if (head[1] + 1 < source.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return result;
+    }
+
+    private int getPageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit <= 0) {
+            throw new ValidationException("Page limit must be positive, got: " + limit);
+        }
+        return Math.min(limit, maxPageSize);
+    }
+}
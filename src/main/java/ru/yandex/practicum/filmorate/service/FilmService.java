@@ -2,29 +2,58 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.event.LikeChangedEvent;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularityFilter;
+import ru.yandex.practicum.filmorate.storage.film.TrendingWindow;
 import ru.yandex.practicum.filmorate.storage.film.database.RatingDao;
-import java.util.Collection;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import javax.validation.Validator;
+import java.util.*;
 
 @Service
 @Slf4j
 public class FilmService {
     private final FilmStorage filmStorage;
     private final RatingDao ratingStorage;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchSize;
 
     @Autowired
-    public FilmService(FilmStorage filmStorage, RatingDao ratingStorage) {
+    public FilmService(FilmStorage filmStorage, RatingDao ratingStorage, GenreStorage genreStorage,
+                       MpaStorage mpaStorage, Validator validator, ApplicationEventPublisher eventPublisher,
+                       @Value("${filmorate.page.default-size}") int defaultPageSize,
+                       @Value("${filmorate.page.max-size}") int maxPageSize,
+                       @Value("${filmorate.batch.max-size}") int maxBatchSize) {
         this.filmStorage = filmStorage;
         this.ratingStorage = ratingStorage;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
     }
 
-    public Collection<Film> findAll() {
-        return filmStorage.findAll();
+    public KeysetPage<Film> findPage(int afterId, Integer limit) {
+        return filmStorage.findPage(afterId, getPageSize(limit));
     }
 
     public Film findById(Integer id) {
@@ -37,30 +66,95 @@ public class FilmService {
         return result.get();
     }
 
+    // Film JSON embeds genre and MPA names, so the reference tables' tags are part of it verbatim,
+    // a combined hash of the two could let a change of one cancel out a change of the other
+    public String findVersionTag(Integer id) {
+        Optional<Long> version = filmStorage.findVersion(id);
+
+        if (version.isEmpty()) {
+            throw new ObjectNotFoundException("Film with id: " + id + " not found!");
+        }
+
+        return version.get() + "-" + Integer.toHexString(genreStorage.findVersion())
+                + "-" + Integer.toHexString(mpaStorage.findVersion());
+    }
+
     public Collection<Film> findPopular(int count) {
-        return ratingStorage.findPopular(count)
-                .stream()
-                .map(filmStorage::findById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+        return filmStorage.findAllByIds(ratingStorage.findPopular(count));
+    }
+
+    public Collection<Film> findPopular(int count, PopularityFilter filter) {
+        if (filter.isEmpty()) {
+            return findPopular(count);
+        }
+        return filmStorage.findAllByIds(ratingStorage.findPopular(count, filter));
+    }
+
+    public Collection<Film> findTrending(TrendingWindow window, int count) {
+        return filmStorage.findAllByIds(ratingStorage.findTrending(window, count));
+    }
+
+    public Collection<Film> search(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Search query must not be blank");
+        }
+        return filmStorage.findAllByIds(filmStorage.search(query, getPageSize(limit)));
     }
 
     public Film create(Film film) {
-        return filmStorage.create(film);
+        Film createdFilm = filmStorage.create(film);
+        ratingStorage.createRatingContainer(createdFilm);
+        return createdFilm;
+    }
+
+    @Transactional
+    public List<BatchItemResult> createAll(List<Film> films) {
+        if (films.size() > maxBatchSize) {
+            throw new ValidationException("Batch size must not exceed " + maxBatchSize + ", got: " + films.size());
+        }
+
+        BatchItemResult[] results = new BatchItemResult[films.size()];
+        List<Film> validFilms = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < films.size(); i++) {
+            List<String> errors = validate(films.get(i));
+            if (errors.isEmpty()) {
+                validFilms.add(films.get(i));
+                validIndexes.add(i);
+            } else {
+                results[i] = BatchItemResult.rejected(i, errors);
+            }
+        }
+
+        filmStorage.createAll(validFilms);
+
+        for (int i = 0; i < validFilms.size(); i++) {
+            Integer filmId = validFilms.get(i).getId();
+            ratingStorage.createRatingContainer(validFilms.get(i));
+            results[validIndexes.get(i)] = BatchItemResult.created(validIndexes.get(i), filmId);
+        }
+
+        log.debug("Batch of {} films imported, {} rejected", validFilms.size(), films.size() - validFilms.size());
+        return Arrays.asList(results);
     }
 
+    // The version bump must become visible together with the new genres
+    @Transactional
     public Film update(Film film) {
         Optional<Film> result = filmStorage.update(film);
         if (result.isEmpty()) {
             throw new ObjectNotFoundException("Film with id: " + film.getId() + " not found!");
         }
+        ratingStorage.updateRatingContainer(result.get());
         return result.get();
     }
 
     public void addLike(Integer filmId, Integer userId) {
         if (checkFilmExists(filmId)) {
-            ratingStorage.addLike(filmId, userId);
+            if (ratingStorage.addLike(filmId, userId)) {
+                eventPublisher.publishEvent(new LikeChangedEvent(filmId, userId, true));
+            }
             log.debug("Film with id:{} was liked by user with id:{}", filmId, userId);
         } else {
             throw new ObjectNotFoundException("Film with id: " + filmId + " not found!");
@@ -70,12 +164,48 @@ public class FilmService {
     public void removeLike(Integer filmId, Integer userId) {
         if (checkFilmExists(filmId)) {
             ratingStorage.removeLike(filmId, userId);
+            eventPublisher.publishEvent(new LikeChangedEvent(filmId, userId, false));
             log.debug("Film with id:{} was unliked by user with id:{}", filmId, userId);
         }
     }
 
+    private List<String> validate(Film film) {
+        List<String> errors = new ArrayList<>();
+        if (film == null) {
+            errors.add("Film must not be null");
+            return errors;
+        }
+
+        validator.validate(film)
+                .forEach(violation -> errors.add(violation.getPropertyPath() + ": " + violation.getMessage()));
+
+        if (film.getMpa() != null && film.getMpa().getId() != null
+                && mpaStorage.findById(film.getMpa().getId()).isEmpty()) {
+            errors.add("mpa: MPA with id " + film.getMpa().getId() + " not found");
+        }
+
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                if (genre == null || genreStorage.findById(genre.getId()).isEmpty()) {
+                    errors.add("genres: Genre with id " + (genre == null ? null : genre.getId()) + " not found");
+                }
+            }
+        }
+        return errors;
+    }
+
+    private int getPageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit <= 0) {
+            throw new ValidationException("Page limit must be positive, got: " + limit);
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
     private boolean checkFilmExists(Integer filmId) {
-        boolean exists = filmStorage.findById(filmId).isPresent();
+        boolean exists = filmStorage.exists(filmId);
         if (!exists) {
             log.error("Film with id:{} not found", filmId);
         }
@@ -21,6 +21,10 @@ public class GenreService {
         return genreStorage.findAll();
     }
 
+    public String findVersionTag() {
+        return Integer.toHexString(genreStorage.findVersion());
+    }
+
     public Genre findById(Integer id) {
         Optional<Genre> result = genreStorage.findById(id);
 
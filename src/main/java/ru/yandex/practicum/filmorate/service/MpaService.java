@@ -21,6 +21,10 @@ public class MpaService {
         return mpaStorage.findAll();
     }
 
+    public String findVersionTag() {
+        return Integer.toHexString(mpaStorage.findVersion());
+    }
+
     public Mpa findById(Integer id) {
         Optional<Mpa> result = mpaStorage.findById(id);
 
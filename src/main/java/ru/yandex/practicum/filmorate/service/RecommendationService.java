@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.database.RatingDao;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recommends films liked by the users whose likes overlap most with the user's own, leaving out the films
+ * the user likes already. Every film the user likes adds one to the overlap of each other user who likes it,
+ * these films are split between the tasks of a fork-join pool. The nearest neighbours then vote for their
+ * other films with their overlap.
+ * <p>
+ * Results are cached per user and dropped when the user's own likes change. Changes of the neighbours' likes
+ * show up once the entry expires.
+ */
+@Service
+@Slf4j
+public class RecommendationService {
+    public static final String CACHE_NAME = "recommendations";
+
+    // A task counting the likers of fewer films than this is not split any further
+    private static final int FILMS_PER_TASK = 8;
+
+    private final RatingDao ratingStorage;
+    private final FilmStorage filmStorage;
+    private final UserDao userStorage;
+    private final int neighbours;
+    private final int maxCount;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final Cache<Integer, List<Integer>> recommendations;
+
+    @Autowired
+    public RecommendationService(RatingDao ratingStorage, FilmStorage filmStorage, UserDao userStorage,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${filmorate.recommendations.neighbours}") int neighbours,
+                                 @Value("${filmorate.recommendations.cache.max-size}") long cacheSize,
+                                 @Value("${filmorate.recommendations.cache.expire-after-write}")
+                                 Duration expireAfterWrite,
+                                 @Value("${filmorate.page.max-size}") int maxCount) {
+        this.ratingStorage = ratingStorage;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.neighbours = neighbours;
+        this.maxCount = maxCount;
+        this.recommendations = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recommendations, CACHE_NAME);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public Collection<Film> findRecommendations(int userId, int count) {
+        if (!userStorage.exists(userId)) {
+            throw new ObjectNotFoundException("User with id: " + userId + " not found!");
+        }
+        if (count <= 0) {
+            throw new ValidationException("Count must be positive, got: " + count);
+        }
+
+        List<Integer> filmIds = recommendations.get(userId, this::recommend);
+        return filmStorage.findAllByIds(filmIds.subList(0, Math.min(count, filmIds.size())));
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        recommendations.invalidate(event.getUserId());
+    }
+
+    private List<Integer> recommend(int userId) {
+        int[] likedFilms = ratingStorage.findLikedFilms(userId);
+        if (likedFilms.length == 0) {
+            return List.of();
+        }
+
+        Map<Integer, Long> overlaps = pool.invoke(new OverlapTask(likedFilms, 0, likedFilms.length));
+        overlaps.remove(userId);
+
+        CompactIntSet liked = CompactIntSet.of(likedFilms);
+        Map<Integer, Long> votes = new HashMap<>();
+        for (Map.Entry<Integer, Long> neighbour : top(overlaps, neighbours)) {
+            for (int filmId : ratingStorage.findLikedFilms(neighbour.getKey())) {
+                if (!liked.contains(filmId)) {
+                    votes.merge(filmId, neighbour.getValue(), Long::sum);
+                }
+            }
+        }
+
+        List<Integer> result = new ArrayList<>();
+        top(votes, maxCount).forEach(vote -> result.add(vote.getKey()));
+        log.debug("Recommendations for user with id:{} computed from {} candidate neighbours", userId,
+                overlaps.size());
+        return result;
+    }
+
+    // Highest values first, ties by lower key
+    private static List<Map.Entry<Integer, Long>> top(Map<Integer, Long> scores, int count) {
+        Comparator<Map.Entry<Integer, Long>> order = Map.Entry.<Integer, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        // Keeps the best count entries with the worst of them on top
+        PriorityQueue<Map.Entry<Integer, Long>> best = new PriorityQueue<>(order.reversed());
+        for (Map.Entry<Integer, Long> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+
+        List<Map.Entry<Integer, Long>> result = new ArrayList<>(best);
+        result.sort(order);
+        return result;
+    }
+
+    // User id -> number of the films in [from, to) the user likes
+    private final class OverlapTask extends RecursiveTask<Map<Integer, Long>> {
+        private final int[] filmIds;
+        private final int from;
+        private final int to;
+
+        private OverlapTask(int[] filmIds, int from, int to) {
+            this.filmIds = filmIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Integer, Long> compute() {
+            if (to - from <= FILMS_PER_TASK) {
+                Map<Integer, Long> overlaps = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    for (int userId : ratingStorage.findLikingUsers(filmIds[i])) {
+                        overlaps.merge(userId, 1L, Long::sum);
+                    }
+                }
+                return overlaps;
+            }
+
+            int middle = (from + to) >>> 1;
+            OverlapTask left = new OverlapTask(filmIds, from, middle);
+            left.fork();
+            Map<Integer, Long> right = new OverlapTask(filmIds, middle, to).compute();
+            return merge(left.join(), right);
+        }
+
+        private Map<Integer, Long> merge(Map<Integer, Long> first, Map<Integer, Long> second) {
+            Map<Integer, Long> larger = first.size() >= second.size() ? first : second;
+            Map<Integer, Long> smaller = larger == first ? second : first;
+            smaller.forEach((userId, overlap) -> larger.merge(userId, overlap, Long::sum));
+            return larger;
+        }
+    }
+}
@@ -2,30 +2,50 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.event.FriendshipChangedEvent;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.database.FriendDao;
 import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import javax.validation.Validator;
+import java.util.*;
 
 @Service
 @Slf4j
 public class UserService {
     private final UserDao userStorage;
     private final FriendDao friendStorage;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchSize;
 
     @Autowired
-    public UserService(UserDao userStorage, FriendDao friendStorage) {
+    public UserService(UserDao userStorage, FriendDao friendStorage, Validator validator,
+                       ApplicationEventPublisher eventPublisher,
+                       @Value("${filmorate.page.default-size}") int defaultPageSize,
+                       @Value("${filmorate.page.max-size}") int maxPageSize,
+                       @Value("${filmorate.batch.max-size}") int maxBatchSize) {
         this.userStorage = userStorage;
         this.friendStorage = friendStorage;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
     }
 
-    public Collection<User> findAll() {
-        return userStorage.findAll();
+    public KeysetPage<User> findPage(int afterId, Integer limit) {
+        return userStorage.findPage(afterId, getPageSize(limit));
     }
 
     public User findById(Integer id) {
@@ -36,8 +56,8 @@ public class UserService {
         return user.get();
     }
 
-    public Collection<User> findFriends(int userId) {
-        return friendStorage.findFriends(userId);
+    public KeysetPage<User> findFriends(int userId, int afterId, Integer limit) {
+        return friendStorage.findFriends(userId, afterId, getPageSize(limit));
     }
 
     public User createUser(User user) {
@@ -51,6 +71,36 @@ public class UserService {
         return null;
     }
 
+    @Transactional
+    public List<BatchItemResult> createUsers(List<User> users) {
+        if (users.size() > maxBatchSize) {
+            throw new ValidationException("Batch size must not exceed " + maxBatchSize + ", got: " + users.size());
+        }
+
+        BatchItemResult[] results = new BatchItemResult[users.size()];
+        List<User> validUsers = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < users.size(); i++) {
+            List<String> errors = validate(users.get(i));
+            if (errors.isEmpty()) {
+                validUsers.add(users.get(i));
+                validIndexes.add(i);
+            } else {
+                results[i] = BatchItemResult.rejected(i, errors);
+            }
+        }
+
+        userStorage.createAll(validUsers);
+
+        for (int i = 0; i < validUsers.size(); i++) {
+            results[validIndexes.get(i)] = BatchItemResult.created(validIndexes.get(i), validUsers.get(i).getId());
+        }
+
+        log.debug("Batch of {} users imported, {} rejected", validUsers.size(), users.size() - validUsers.size());
+        return Arrays.asList(results);
+    }
+
     public User updateUser(User user) {
         Optional<User> updatedUser = userStorage.update(user);
         if (updatedUser.isEmpty()) {
@@ -62,45 +112,77 @@ public class UserService {
     }
 
     public void createFriendship(Integer userId1, Integer userId2) {
+        checkUserExists(userId1);
+        checkUserExists(userId2);
+
         addFriend(userId1, userId2);
         friendStorage.confirmFriendship(userId1, userId2);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId1, userId2, true));
 
         addFriend(userId2, userId1);
     }
 
     public void removeFriendship(Integer userId1, Integer userId2) {
+        checkUserExists(userId1);
+        checkUserExists(userId2);
+
         removeFriend(userId1, userId2);
         removeFriend(userId2, userId1);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId1, userId2, false));
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId2, userId1, false));
+    }
+
+    public List<FriendSuggestion> findSuggestions(Integer userId, int count) {
+        checkUserExists(userId);
+        if (count <= 0) {
+            throw new ValidationException("Count must be positive, got: " + count);
+        }
+        return friendStorage.findSuggestions(userId, Math.min(count, maxPageSize));
     }
 
     public Collection<User> findCommonFriends(Integer firstUserId, Integer secondUserId) {
-        Collection<User> firstUserFriends = friendStorage.findFriends(firstUserId);
-        Collection<User> secondUserFriends = friendStorage.findFriends(secondUserId);
+        return friendStorage.findCommonFriends(firstUserId, secondUserId);
+    }
 
-        Set<User> commonFriends = new HashSet<>(firstUserFriends);
-        commonFriends.retainAll(secondUserFriends);
+    public int countCommonFriends(Integer firstUserId, Integer secondUserId) {
+        return friendStorage.countCommonFriends(firstUserId, secondUserId);
+    }
 
-        return commonFriends;
+    private List<String> validate(User user) {
+        List<String> errors = new ArrayList<>();
+        if (user == null) {
+            errors.add("User must not be null");
+            return errors;
+        }
+
+        validator.validate(user)
+                .forEach(violation -> errors.add(violation.getPropertyPath() + ": " + violation.getMessage()));
+        return errors;
     }
 
-    private void addFriend(int userId, int friendId) {
-        Optional<User> friend = userStorage.findById(friendId);
+    private int getPageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit <= 0) {
+            throw new ValidationException("Page limit must be positive, got: " + limit);
+        }
+        return Math.min(limit, maxPageSize);
+    }
 
-        if (friend.isEmpty()) {
-            throw new ObjectNotFoundException("User with id: " + friendId + " not found!");
+    private void checkUserExists(Integer userId) {
+        if (!userStorage.exists(userId)) {
+            throw new ObjectNotFoundException("User with id: " + userId + " not found!");
         }
+    }
 
-        friendStorage.addFriend(userId, friend.get());
+    private void addFriend(int userId, int friendId) {
+        friendStorage.addFriend(userId, friendId);
         log.debug("User with id:{} got a friend with id:{}", userId, friendId);
     }
 
     private void removeFriend(int userId, int friendId) {
-        Optional<User> friend = userStorage.findById(friendId);
-        if (friend.isEmpty()) {
-            throw new ObjectNotFoundException("User with id: " + friendId + " not found!");
-        }
-
-        friendStorage.removeFriend(userId, friend.get());
+        friendStorage.removeFriend(userId, friendId);
         log.debug("User with id:{} lost a friend with id:{}", userId, friendId);
     }
 }
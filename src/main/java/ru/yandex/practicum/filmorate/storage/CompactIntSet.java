@@ -0,0 +1,450 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Sorted set of primitive ints, split by the high 16 bits into containers like a Roaring bitmap.
+ * A container keeps up to 4096 values as a sorted char array and switches to a 8 KB bitmap above that,
+ * so an element costs about 2 bytes instead of a boxed Integer plus a hash node. Not thread-safe.
+ */
+public class CompactIntSet {
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final char[] EMPTY_KEYS = new char[0];
+    private static final Container[] EMPTY_CONTAINERS = new Container[0];
+
+    private char[] keys = EMPTY_KEYS;
+    private Container[] containers = EMPTY_CONTAINERS;
+    private int containerCount;
+    private int size;
+
+    public static CompactIntSet of(int... values) {
+        CompactIntSet set = new CompactIntSet();
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public boolean add(int value) {
+        char key = highBits(value);
+        int index = Arrays.binarySearch(keys, 0, containerCount, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer(new char[4], 0));
+        }
+
+        Container container = containers[index];
+        int cardinality = container.cardinality;
+        containers[index] = container.add(lowBits(value));
+        if (containers[index].cardinality == cardinality) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(keys, 0, containerCount, highBits(value));
+        if (index < 0) {
+            return false;
+        }
+
+        Container container = containers[index];
+        int cardinality = container.cardinality;
+        Container updated = container.remove(lowBits(value));
+        if (updated.cardinality == cardinality) {
+            return false;
+        }
+
+        size--;
+        if (updated.cardinality == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = updated;
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, containerCount, highBits(value));
+        return index >= 0 && containers[index].contains(lowBits(value));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < containerCount; i++) {
+            containers[i].forEach(highPart(keys[i]), action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] result = new int[size];
+        int count = 0;
+        for (int i = 0; i < containerCount; i++) {
+            count += containers[i].copyFrom(0, result, count, size - count, highPart(keys[i]));
+        }
+        return result;
+    }
+
+    // Values greater than afterExclusive in ascending order, at most limit of them
+    public int[] toArray(int afterExclusive, int limit) {
+        if (afterExclusive == Integer.MAX_VALUE || limit <= 0) {
+            return new int[0];
+        }
+
+        int from = afterExclusive + 1;
+        int index = Arrays.binarySearch(keys, 0, containerCount, highBits(from));
+        boolean sameContainer = index >= 0;
+        if (!sameContainer) {
+            index = -index - 1;
+        }
+
+        int[] result = new int[Math.min(limit, size)];
+        int count = 0;
+        for (int i = index; i < containerCount && count < result.length; i++) {
+            int fromLow = i == index && sameContainer ? lowBits(from) : 0;
+            count += containers[i].copyFrom(fromLow, result, count, result.length - count, highPart(keys[i]));
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    public CompactIntSet intersect(CompactIntSet other) {
+        CompactIntSet result = new CompactIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container intersection = containers[i].and(other.containers[j]);
+                if (intersection.cardinality > 0) {
+                    result.insertContainer(result.containerCount, keys[i], intersection);
+                    result.size += intersection.cardinality;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public int intersectionSize(CompactIntSet other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (containerCount == keys.length) {
+            int capacity = Math.max(4, containerCount * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containerCount++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        containerCount--;
+        containers[containerCount] = null;
+    }
+
+    // Flipping the sign bit keeps negative values ordered before positive ones
+    private static char highBits(int value) {
+        return (char) ((value >>> 16) ^ 0x8000);
+    }
+
+    private static char lowBits(int value) {
+        return (char) value;
+    }
+
+    private static int highPart(char key) {
+        return (key ^ 0x8000) << 16;
+    }
+
+    private abstract static class Container {
+        int cardinality;
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract int copyFrom(int fromLow, int[] target, int offset, int max, int high);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_CONTAINER_MAX_SIZE) {
+                return toBitmap().add(value);
+            }
+
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX_SIZE, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index < 0) {
+                return this;
+            }
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        int copyFrom(int fromLow, int[] target, int offset, int max, int high) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) fromLow);
+            if (index < 0) {
+                index = -index - 1;
+            }
+
+            int count = 0;
+            while (index < cardinality && count < max) {
+                target[offset + count++] = high | values[index++];
+            }
+            return count;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.and(this);
+            }
+
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[Math.min(cardinality, array.cardinality)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                if (values[i] < array.values[j]) {
+                    i++;
+                } else if (values[i] > array.values[j]) {
+                    j++;
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.andCardinality(this);
+            }
+
+            ArrayContainer array = (ArrayContainer) other;
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                if (values[i] < array.values[j]) {
+                    i++;
+                } else if (values[i] > array.values[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[BITMAP_WORDS];
+
+        @Override
+        Container add(char value) {
+            long mask = 1L << value;
+            int index = value >>> 6;
+            if ((words[index] & mask) == 0) {
+                words[index] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long mask = 1L << value;
+            int index = value >>> 6;
+            if ((words[index] & mask) == 0) {
+                return this;
+            }
+            words[index] &= ~mask;
+            cardinality--;
+            return cardinality <= ARRAY_CONTAINER_MAX_SIZE ? toArrayContainer() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        int copyFrom(int fromLow, int[] target, int offset, int max, int high) {
+            int count = 0;
+            int i = fromLow >>> 6;
+            long word = words[i] & (-1L << fromLow);
+            while (count < max) {
+                while (word != 0 && count < max) {
+                    target[offset + count++] = high | (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+                if (++i == BITMAP_WORDS) {
+                    break;
+                }
+                word = words[i];
+            }
+            return count;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                char[] result = new char[array.cardinality];
+                int count = 0;
+                for (int i = 0; i < array.cardinality; i++) {
+                    if (contains(array.values[i])) {
+                        result[count++] = array.values[i];
+                    }
+                }
+                return new ArrayContainer(result, count);
+            }
+
+            BitmapContainer bitmap = (BitmapContainer) other;
+            BitmapContainer result = new BitmapContainer();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result.words[i] = words[i] & bitmap.words[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality <= ARRAY_CONTAINER_MAX_SIZE ? result.toArrayContainer() : result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    if (contains(array.values[i])) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+
+            BitmapContainer bitmap = (BitmapContainer) other;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                count += Long.bitCount(words[i] & bitmap.words[i]);
+            }
+            return count;
+        }
+
+        private ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ids of live rows kept in a {@link CompactIntSet}, so write paths can check existence without a query.
+ * Ids added inside a transaction become visible after it commits and are dropped if it rolls back.
+ * A miss is only an answer once the table confirms it, see {@link #contains(Integer, Predicate)}.
+ */
+public class IdIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private CompactIntSet ids = new CompactIntSet();
+
+    public void reset(Collection<Integer> liveIds) {
+        CompactIntSet loaded = new CompactIntSet();
+        liveIds.forEach(loaded::add);
+
+        lock.writeLock().lock();
+        try {
+            ids = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(Integer id) {
+        if (id == null) {
+            return false;
+        }
+
+        lock.readLock().lock();
+        try {
+            return ids.contains(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A row written past this index, e.g. by another instance on the same database, is found by the lookup
+    // and indexed, so only ids that really do not exist cost a query
+    public boolean contains(Integer id, Predicate<Integer> lookup) {
+        if (contains(id)) {
+            return true;
+        }
+        if (id == null || !lookup.test(id)) {
+            return false;
+        }
+        add(id);
+        return true;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(Integer id) {
+        addAll(List.of(id));
+    }
+
+    public void addAll(Collection<Integer> createdIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addNow(createdIds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addNow(createdIds);
+            }
+        });
+    }
+
+    private void addNow(Collection<Integer> createdIds) {
+        lock.writeLock().lock();
+        try {
+            createdIds.forEach(ids::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
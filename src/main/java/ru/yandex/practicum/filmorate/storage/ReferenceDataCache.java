@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Immutable snapshot of a small reference table, indexed by id in a dense array.
+ * The same instances are handed out on every lookup until {@link #refresh()} loads a new snapshot.
+ */
+public class ReferenceDataCache<T> {
+    private final Supplier<Collection<T>> loader;
+    private final Function<T, Integer> idExtractor;
+    private volatile Snapshot<T> snapshot;
+
+    public ReferenceDataCache(Supplier<Collection<T>> loader, Function<T, Integer> idExtractor) {
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+    }
+
+    public void refresh() {
+        List<T> items = new ArrayList<>(loader.get());
+        items.sort(Comparator.comparing(idExtractor));
+
+        int maxId = items.isEmpty() ? -1 : idExtractor.apply(items.get(items.size() - 1));
+        Object[] byId = new Object[maxId + 1];
+        items.forEach(item -> byId[idExtractor.apply(item)] = item);
+
+        snapshot = new Snapshot<>(byId, Collections.unmodifiableList(items), items.hashCode());
+    }
+
+    public List<T> findAll() {
+        return currentSnapshot().all;
+    }
+
+    // Derived from the content, so it only changes when the table does and survives restarts
+    public int getVersion() {
+        return currentSnapshot().version;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<T> findById(Integer id) {
+        Object[] byId = currentSnapshot().byId;
+        if (id == null || id < 0 || id >= byId.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((T) byId[id]);
+    }
+
+    private Snapshot<T> currentSnapshot() {
+        Snapshot<T> current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static final class Snapshot<T> {
+        private final Object[] byId;
+        private final List<T> all;
+        private final int version;
+
+        private Snapshot(Object[] byId, List<T> all, int version) {
+            this.byId = byId;
+            this.all = all;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Popularity of films per genre, MPA rating and release year, one {@link Leaderboard} per category.
+ * A film sits in the board of each of its categories with its full score and moves when its categories change.
+ * A combined filter walks the smallest of its boards in rank order and keeps the films the other boards contain.
+ */
+public class CategoryLeaderboards {
+    private final ConcurrentMap<Integer, Leaderboard> byGenre = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Leaderboard> byMpa = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Leaderboard> byYear = new ConcurrentHashMap<>();
+    // Changed under the per-id lock of films.compute(), so the boards of a film always agree on its score
+    private final ConcurrentMap<Integer, Entry> films = new ConcurrentHashMap<>();
+
+    public void reset(Map<Integer, Categories> categories, Map<Integer, Long> scores) {
+        films.clear();
+        byGenre.clear();
+        byMpa.clear();
+        byYear.clear();
+        categories.forEach((filmId, filmCategories) -> {
+            films.put(filmId, new Entry(filmCategories, scores.getOrDefault(filmId, 0L)));
+            boardsOf(filmCategories).forEach(board -> board.set(filmId, scores.getOrDefault(filmId, 0L)));
+        });
+    }
+
+    // Adds the film or moves it to its new categories, keeping its score
+    public void put(Film film) {
+        Categories categories = Categories.of(film);
+        films.compute(film.getId(), (filmId, entry) -> {
+            long score = entry == null ? 0L : entry.score;
+            if (entry != null) {
+                boardsOf(entry.categories).forEach(board -> board.remove(filmId));
+            }
+            boardsOf(categories).forEach(board -> board.set(filmId, score));
+            return new Entry(categories, score);
+        });
+    }
+
+    public void increment(Integer filmId, long delta) {
+        films.compute(filmId, (id, entry) -> entry == null ? new Entry(Categories.NONE, delta)
+                : setScore(id, entry, entry.score + delta));
+    }
+
+    public void set(Integer filmId, long score) {
+        films.compute(filmId, (id, entry) -> entry == null ? new Entry(Categories.NONE, score)
+                : setScore(id, entry, score));
+    }
+
+    public List<Integer> top(PopularityFilter filter, int count) {
+        List<Leaderboard> boards = new ArrayList<>();
+        if (filter.getGenreId() != null) {
+            boards.add(byGenre.get(filter.getGenreId()));
+        }
+        if (filter.getMpaId() != null) {
+            boards.add(byMpa.get(filter.getMpaId()));
+        }
+        if (filter.getYear() != null) {
+            boards.add(byYear.get(filter.getYear()));
+        }
+        if (boards.isEmpty()) {
+            throw new IllegalArgumentException("At least one filter must be set");
+        }
+        if (boards.contains(null)) {
+            return new ArrayList<>();
+        }
+
+        boards.sort(Comparator.comparingInt(Leaderboard::size));
+        List<Leaderboard> others = boards.subList(1, boards.size());
+        return boards.get(0).top(count, filmId -> others.stream().allMatch(board -> board.contains(filmId)));
+    }
+
+    private Entry setScore(Integer filmId, Entry entry, long score) {
+        boardsOf(entry.categories).forEach(board -> board.set(filmId, score));
+        return new Entry(entry.categories, score);
+    }
+
+    private List<Leaderboard> boardsOf(Categories categories) {
+        List<Leaderboard> boards = new ArrayList<>();
+        for (int genreId : categories.genreIds) {
+            boards.add(byGenre.computeIfAbsent(genreId, id -> new Leaderboard()));
+        }
+        if (categories.mpaId != null) {
+            boards.add(byMpa.computeIfAbsent(categories.mpaId, id -> new Leaderboard()));
+        }
+        if (categories.year != null) {
+            boards.add(byYear.computeIfAbsent(categories.year, id -> new Leaderboard()));
+        }
+        return boards;
+    }
+
+    public static final class Categories {
+        private static final Categories NONE = new Categories(Set.of(), null, null);
+
+        private final Set<Integer> genreIds;
+        private final Integer mpaId;
+        private final Integer year;
+
+        private Categories(Set<Integer> genreIds, Integer mpaId, Integer year) {
+            this.genreIds = genreIds;
+            this.mpaId = mpaId;
+            this.year = year;
+        }
+
+        public static Categories of(Collection<Integer> genreIds, Integer mpaId, LocalDate releaseDate) {
+            return new Categories(Set.copyOf(genreIds), mpaId, releaseDate == null ? null : releaseDate.getYear());
+        }
+
+        public static Categories of(Film film) {
+            Set<Integer> genreIds = new HashSet<>();
+            if (film.getGenres() != null) {
+                film.getGenres().stream().filter(Objects::nonNull).map(Genre::getId).filter(Objects::nonNull)
+                        .forEach(genreIds::add);
+            }
+            Mpa mpa = film.getMpa();
+            return of(genreIds, mpa == null ? null : mpa.getId(), film.getReleaseDate());
+        }
+    }
+
+    private static final class Entry {
+        private final Categories categories;
+        private final long score;
+
+        private Entry(Categories categories, long score) {
+            this.categories = categories;
+            this.score = score;
+        }
+    }
+}
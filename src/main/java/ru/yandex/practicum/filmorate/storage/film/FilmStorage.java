@@ -1,15 +1,31 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    KeysetPage<Film> findPage(int afterId, int limit);
+
     Film create(Film film);
 
+    List<Film> createAll(List<Film> films);
+
     Optional<Film> update(Film film);
 
     Optional<Film> findById(Integer id);
+
+    boolean exists(Integer id);
+
+    // Changes whenever the film or its genres are updated
+    Optional<Long> findVersion(Integer id);
+
+    List<Film> findAllByIds(Collection<Integer> ids);
+
+    // Ids of the best matches of the query in film names and descriptions, best first
+    List<Integer> search(String query, int limit);
 }
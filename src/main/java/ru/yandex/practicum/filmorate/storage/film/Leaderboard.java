@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe ranking of ids by score (highest first, ties by lower id).
+ * Updates take O(log n), reading the top {@code count} ids takes O(count).
+ */
+public class Leaderboard {
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::getScore).reversed()
+            .thenComparingInt(Entry::getId);
+
+    private final ConcurrentMap<Integer, Long> scores = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+
+    public void reset(Map<Integer, Long> initialScores) {
+        scores.clear();
+        ranking.clear();
+        initialScores.forEach(this::set);
+    }
+
+    public void add(Integer id) {
+        scores.computeIfAbsent(id, key -> {
+            ranking.add(new Entry(key, 0L));
+            return 0L;
+        });
+    }
+
+    public void set(Integer id, long score) {
+        scores.compute(id, (key, oldScore) -> replace(key, oldScore, score));
+    }
+
+    public void increment(Integer id, long delta) {
+        scores.compute(id, (key, oldScore) -> replace(key, oldScore, (oldScore == null ? 0L : oldScore) + delta));
+    }
+
+    public void remove(Integer id) {
+        scores.computeIfPresent(id, (key, oldScore) -> {
+            ranking.remove(new Entry(key, oldScore));
+            return null;
+        });
+    }
+
+    public long score(Integer id) {
+        return scores.getOrDefault(id, 0L);
+    }
+
+    public boolean contains(Integer id) {
+        return scores.containsKey(id);
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    public List<Integer> top(int count) {
+        return top(count, id -> true);
+    }
+
+    // Walks the ranking until count ids pass the filter, so a selective filter may visit every entry
+    public List<Integer> top(int count, Predicate<Integer> filter) {
+        // An id may be seen twice while its entry is being moved, so skip the duplicates
+        Set<Integer> result = new LinkedHashSet<>();
+        Iterator<Entry> iterator = ranking.iterator();
+        while (result.size() < count && iterator.hasNext()) {
+            Integer id = iterator.next().getId();
+            if (filter.test(id)) {
+                result.add(id);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    // Called under the per-id lock of scores.compute(), so concurrent updates of one id are serialized
+    private Long replace(Integer id, Long oldScore, long newScore) {
+        ranking.add(new Entry(id, newScore));
+        if (oldScore != null && oldScore != newScore) {
+            ranking.remove(new Entry(id, oldScore));
+        }
+        return newScore;
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final long score;
+
+        private Entry(int id, long score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        private int getId() {
+            return id;
+        }
+
+        private long getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sparse user × film matrix of current likes, kept both by row (films of a user) and by column (users of a film),
+ * so the neighbours of a user are found without a query. Each row and column is guarded by its own monitor.
+ */
+public class LikeMatrix {
+    private static final int[] NONE = new int[0];
+
+    private final ConcurrentMap<Integer, CompactIntSet> filmsOfUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, CompactIntSet> usersOfFilm = new ConcurrentHashMap<>();
+
+    public void clear() {
+        filmsOfUser.clear();
+        usersOfFilm.clear();
+    }
+
+    public void set(int filmId, int userId, boolean liked) {
+        CompactIntSet films = filmsOfUser.computeIfAbsent(userId, id -> new CompactIntSet());
+        synchronized (films) {
+            if (liked) {
+                films.add(filmId);
+            } else {
+                films.remove(filmId);
+            }
+        }
+
+        CompactIntSet users = usersOfFilm.computeIfAbsent(filmId, id -> new CompactIntSet());
+        synchronized (users) {
+            if (liked) {
+                users.add(userId);
+            } else {
+                users.remove(userId);
+            }
+        }
+    }
+
+    // Ascending ids of the films the user likes
+    public int[] filmsOf(int userId) {
+        return copyOf(filmsOfUser.get(userId));
+    }
+
+    // Ascending ids of the users who like the film
+    public int[] usersOf(int filmId) {
+        return copyOf(usersOfFilm.get(filmId));
+    }
+
+    private static int[] copyOf(CompactIntSet set) {
+        if (set == null) {
+            return NONE;
+        }
+        synchronized (set) {
+            return set.toArray();
+        }
+    }
+}
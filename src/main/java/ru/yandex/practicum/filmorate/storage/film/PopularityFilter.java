@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.Data;
+
+/**
+ * Filters of /films/popular?genreId=...&mpaId=...&year=..., a film has to match every one that is set.
+ */
+@Data
+public class PopularityFilter {
+    private final Integer genreId;
+    private final Integer mpaId;
+    private final Integer year;
+
+    public boolean isEmpty() {
+        return genreId == null && mpaId == null && year == null;
+    }
+}
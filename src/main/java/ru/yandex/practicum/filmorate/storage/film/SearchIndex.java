@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Film;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over film names and descriptions. Text is lower-cased, "ё" is read as "е" and split into runs
+ * of letters and digits, so Cyrillic and Latin words are tokenized alike. A query word matches an indexed word
+ * exactly, as its prefix or, if neither is found, by sharing most of its trigrams, which forgives a typo.
+ * Every query word has to match; films are ranked by the match quality times the rarity of the matched words,
+ * with words of the name weighing more than those of the description.
+ * Films put inside a transaction become searchable after it commits, like ids of {@code IdIndex}.
+ */
+public class SearchIndex {
+    private static final int NAME_WEIGHT = 3;
+    private static final double PREFIX_QUALITY = 0.5;
+    private static final double TRIGRAM_QUALITY = 0.4;
+    private static final double MIN_TRIGRAM_SIMILARITY = 0.4;
+    private static final int MIN_TRIGRAM_WORD_LENGTH = 4;
+    // A short prefix would otherwise expand to a large part of the vocabulary
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Word -> film id -> weight of the word in the film
+    private final NavigableMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    private final Map<String, Set<String>> wordsByTrigram = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> wordsOfFilm = new HashMap<>();
+
+    public void reset(Collection<Film> films) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            wordsByTrigram.clear();
+            wordsOfFilm.clear();
+            films.forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds the film or replaces its words
+    public void put(Film film) {
+        putAll(List.of(film));
+    }
+
+    public void putAll(Collection<Film> films) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            putNow(films);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                putNow(films);
+            }
+        });
+    }
+
+    public List<Integer> search(String query, int limit) {
+        Set<String> queryWords = new LinkedHashSet<>(tokenize(query));
+        if (queryWords.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String queryWord : queryWords) {
+                Map<Integer, Double> wordScores = score(queryWord);
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    scores.keySet().retainAll(wordScores.keySet());
+                    scores.replaceAll((filmId, score) -> score + wordScores.get(filmId));
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Integer, Double>> ranking = new ArrayList<>(scores.entrySet());
+        ranking.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < ranking.size() && i < limit; i++) {
+            result.add(ranking.get(i).getKey());
+        }
+        return result;
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private void putNow(Collection<Film> films) {
+        lock.writeLock().lock();
+        try {
+            films.forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Film film) {
+        unindex(film.getId());
+
+        Map<String, Integer> weights = new HashMap<>();
+        tokenize(film.getName()).forEach(word -> weights.merge(word, NAME_WEIGHT, Integer::sum));
+        tokenize(film.getDescription()).forEach(word -> weights.merge(word, 1, Integer::sum));
+        weights.forEach((word, weight) -> {
+            Map<Integer, Integer> films = postings.get(word);
+            if (films == null) {
+                films = new HashMap<>();
+                postings.put(word, films);
+                trigrams(word).forEach(trigram -> wordsByTrigram.computeIfAbsent(trigram, key -> new HashSet<>())
+                        .add(word));
+            }
+            films.put(film.getId(), weight);
+        });
+        wordsOfFilm.put(film.getId(), weights);
+    }
+
+    private void unindex(Integer filmId) {
+        Map<String, Integer> weights = wordsOfFilm.remove(filmId);
+        if (weights == null) {
+            return;
+        }
+
+        for (String word : weights.keySet()) {
+            Map<Integer, Integer> films = postings.get(word);
+            films.remove(filmId);
+            if (!films.isEmpty()) {
+                continue;
+            }
+
+            postings.remove(word);
+            for (String trigram : trigrams(word)) {
+                Set<String> words = wordsByTrigram.get(trigram);
+                words.remove(word);
+                if (words.isEmpty()) {
+                    wordsByTrigram.remove(trigram);
+                }
+            }
+        }
+    }
+
+    // Film id -> best score among the indexed words the query word matches
+    private Map<Integer, Double> score(String queryWord) {
+        Map<Integer, Double> scores = new HashMap<>();
+        matches(queryWord).forEach((word, quality) -> {
+            Map<Integer, Integer> films = postings.get(word);
+            double rarity = Math.log(1 + (double) wordsOfFilm.size() / films.size());
+            films.forEach((filmId, weight) -> scores.merge(filmId, quality * rarity * weight, Math::max));
+        });
+        return scores;
+    }
+
+    // Indexed word -> match quality
+    private Map<String, Double> matches(String queryWord) {
+        Map<String, Double> matches = new HashMap<>();
+        if (postings.containsKey(queryWord)) {
+            matches.put(queryWord, 1.0);
+        }
+        for (String word : postings.subMap(queryWord, false, queryWord + Character.MAX_VALUE, false).keySet()) {
+            if (matches.size() > MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            matches.put(word, PREFIX_QUALITY);
+        }
+        if (!matches.isEmpty() || queryWord.length() < MIN_TRIGRAM_WORD_LENGTH) {
+            return matches;
+        }
+
+        List<String> queryTrigrams = trigrams(queryWord);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            wordsByTrigram.getOrDefault(trigram, Set.of()).forEach(word -> shared.merge(word, 1, Integer::sum));
+        }
+        shared.forEach((word, count) -> {
+            // Dice coefficient of the two trigram sets
+            double similarity = 2.0 * count / (queryTrigrams.size() + trigrams(word).size());
+            if (similarity >= MIN_TRIGRAM_SIMILARITY) {
+                matches.put(word, TRIGRAM_QUALITY * similarity);
+            }
+        });
+        return matches;
+    }
+
+    // Trigrams of the word padded with spaces, so its first and last letters count as much as the middle ones
+    private static List<String> trigrams(String word) {
+        String padded = " " + word + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return new ArrayList<>(trigrams);
+    }
+}
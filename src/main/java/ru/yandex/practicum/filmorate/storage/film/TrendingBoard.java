@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Net likes per film over the {@link TrendingWindow}s. Every film has a ring of bucketed like counts per
+ * bucket length, each window keeps its running sums in a {@link Leaderboard} of the films with a positive sum.
+ * A bucket also remembers which films it counted, so a bucket leaving a window only touches those films.
+ * An unlike is counted in the bucket it happens in, so a window shows likes gained minus likes lost.
+ */
+public class TrendingBoard {
+    private final Clock clock;
+    private final Map<Duration, Ring> rings = new HashMap<>();
+    private final Map<TrendingWindow, Ring> ringOfWindow = new EnumMap<>(TrendingWindow.class);
+
+    public TrendingBoard() {
+        this(Clock.systemUTC());
+    }
+
+    public TrendingBoard(Clock clock) {
+        this.clock = clock;
+        for (TrendingWindow window : TrendingWindow.values()) {
+            Ring ring = rings.computeIfAbsent(window.getBucket(), Ring::new);
+            ring.addWindow(window);
+            ringOfWindow.put(window, ring);
+        }
+    }
+
+    public void record(int filmId, int delta) {
+        record(filmId, delta, clock.instant());
+    }
+
+    // Changes older than the longest window are ignored
+    public synchronized void record(int filmId, int delta, Instant at) {
+        long now = clock.millis();
+        for (Ring ring : rings.values()) {
+            ring.advance(now);
+            ring.record(filmId, delta, at.toEpochMilli());
+        }
+    }
+
+    public synchronized List<Integer> top(TrendingWindow window, int count) {
+        Ring ring = ringOfWindow.get(window);
+        ring.advance(clock.millis());
+        return ring.boards.get(window).top(count);
+    }
+
+    public synchronized void clear() {
+        rings.values().forEach(Ring::clear);
+    }
+
+    // Buckets of one length, as many as the longest window made of them needs
+    private static final class Ring {
+        private final long bucketMillis;
+        private final List<TrendingWindow> windows = new ArrayList<>();
+        private final Map<TrendingWindow, Map<Integer, Long>> sums = new EnumMap<>(TrendingWindow.class);
+        private final Map<TrendingWindow, Leaderboard> boards = new EnumMap<>(TrendingWindow.class);
+        private final Map<Integer, int[]> counts = new HashMap<>();
+        private CompactIntSet[] touched = new CompactIntSet[0];
+        // Index of the newest bucket, buckets are counted from the epoch
+        private long current = Long.MIN_VALUE;
+
+        private Ring(Duration bucket) {
+            this.bucketMillis = bucket.toMillis();
+        }
+
+        private void addWindow(TrendingWindow window) {
+            windows.add(window);
+            sums.put(window, new HashMap<>());
+            boards.put(window, new Leaderboard());
+            if (window.getBuckets() > touched.length) {
+                touched = new CompactIntSet[window.getBuckets()];
+                Arrays.setAll(touched, slot -> new CompactIntSet());
+            }
+        }
+
+        private int size() {
+            return touched.length;
+        }
+
+        private void advance(long nowMillis) {
+            long target = Math.floorDiv(nowMillis, bucketMillis);
+            if (current == Long.MIN_VALUE || target - current >= size()) {
+                clear();
+                current = target;
+                return;
+            }
+
+            while (current < target) {
+                current++;
+                for (TrendingWindow window : windows) {
+                    expire(window, current - window.getBuckets());
+                }
+                reuse(slot(current));
+            }
+        }
+
+        private void record(int filmId, int delta, long atMillis) {
+            long bucket = Math.floorDiv(atMillis, bucketMillis);
+            if (bucket > current || bucket <= current - size()) {
+                return;
+            }
+
+            int slot = slot(bucket);
+            counts.computeIfAbsent(filmId, id -> new int[size()])[slot] += delta;
+            touched[slot].add(filmId);
+            for (TrendingWindow window : windows) {
+                if (bucket > current - window.getBuckets()) {
+                    add(window, filmId, delta);
+                }
+            }
+        }
+
+        // The bucket has just left the window
+        private void expire(TrendingWindow window, long bucket) {
+            int slot = slot(bucket);
+            touched[slot].forEach(filmId -> {
+                int[] filmCounts = counts.get(filmId);
+                if (filmCounts != null) {
+                    add(window, filmId, -filmCounts[slot]);
+                }
+            });
+        }
+
+        // The slot has left every window and starts counting the newest bucket
+        private void reuse(int slot) {
+            touched[slot].forEach(filmId -> {
+                int[] filmCounts = counts.get(filmId);
+                if (filmCounts == null) {
+                    return;
+                }
+                filmCounts[slot] = 0;
+                if (Arrays.stream(filmCounts).allMatch(count -> count == 0)) {
+                    counts.remove(filmId);
+                }
+            });
+            touched[slot] = new CompactIntSet();
+        }
+
+        private void add(TrendingWindow window, int filmId, long delta) {
+            if (delta == 0) {
+                return;
+            }
+
+            long sum = sums.get(window).merge(filmId, delta, Long::sum);
+            if (sum > 0) {
+                boards.get(window).set(filmId, sum);
+            } else {
+                boards.get(window).remove(filmId);
+            }
+            if (sum == 0) {
+                sums.get(window).remove(filmId);
+            }
+        }
+
+        private void clear() {
+            counts.clear();
+            Arrays.setAll(touched, slot -> new CompactIntSet());
+            sums.values().forEach(Map::clear);
+            boards.values().forEach(board -> board.reset(Map.of()));
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) size());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import java.time.Duration;
+
+/**
+ * Windows of /films/popular?window=..., each counted in {@code buckets} buckets of {@code bucket} length.
+ */
+public enum TrendingWindow {
+    HOUR("1h", Duration.ofMinutes(1), 60),
+    DAY("24h", Duration.ofHours(1), 24),
+    WEEK("7d", Duration.ofHours(1), 168);
+
+    private final String value;
+    private final Duration bucket;
+    private final int buckets;
+
+    TrendingWindow(String value, Duration bucket, int buckets) {
+        this.value = value;
+        this.bucket = bucket;
+        this.buckets = buckets;
+    }
+
+    public static TrendingWindow of(String value) {
+        for (TrendingWindow window : values()) {
+            if (window.value.equals(value)) {
+                return window;
+            }
+        }
+        throw new ValidationException("Unknown window " + value + ", expected 1h, 24h or 7d");
+    }
+
+    public Duration getBucket() {
+        return bucket;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public Duration getLength() {
+        return bucket.multipliedBy(buckets);
+    }
+}
@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.storage.film.database;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.event.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.event.LikesFlushedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import java.util.*;
+
+/**
+ * Keeps hydrated films of DatabaseFilmStorage.findById and findAllByIds in a Caffeine cache. Its W-TinyLFU policy admits
+ * a new film only if it is requested more often than the film it would evict, so a scan over many
+ * films can't flush the popular ones. The cache is bounded by the estimated size of the cached films.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "database", matchIfMissing = true)
+public class CachingFilmStorage implements FilmStorage {
+    public static final String CACHE_NAME = "films";
+
+    // Rough heap footprint of a film without its strings and collections, and of one collection element
+    private static final int FILM_BYTES = 200;
+    private static final int ELEMENT_BYTES = 20;
+
+    private final DatabaseFilmStorage filmStorage;
+    private final Cache<Integer, Film> films;
+
+    @Autowired
+    public CachingFilmStorage(DatabaseFilmStorage filmStorage, MeterRegistry meterRegistry,
+                              @Value("${filmorate.cache.films.max-memory}") DataSize maxMemory) {
+        this.filmStorage = filmStorage;
+        this.films = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((Integer id, Film film) -> estimateSize(film))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, films, CACHE_NAME);
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Override
+    public KeysetPage<Film> findPage(int afterId, int limit) {
+        return filmStorage.findPage(afterId, limit);
+    }
+
+    @Override
+    public Film create(Film film) {
+        return filmStorage.create(film);
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        return filmStorage.createAll(films);
+    }
+
+    @Override
+    public Optional<Film> update(Film film) {
+        Optional<Film> result = filmStorage.update(film);
+        invalidateAfterCommit(film.getId());
+        return result;
+    }
+
+    @Override
+    public Optional<Film> findById(Integer id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        // Missing films are not cached, the loader returning null leaves no entry
+        Film film = films.get(id, key -> filmStorage.findById(key)
+                .map(CachingFilmStorage::frozenCopyOf)
+                .orElse(null));
+        return Optional.ofNullable(film).map(CachingFilmStorage::copyOf);
+    }
+
+    @Override
+    public List<Integer> search(String query, int limit) {
+        return filmStorage.search(query, limit);
+    }
+
+    @Override
+    public boolean exists(Integer id) {
+        return filmStorage.exists(id);
+    }
+
+    @Override
+    public Optional<Long> findVersion(Integer id) {
+        return filmStorage.findVersion(id);
+    }
+
+    // Cached films are served from memory, the missing ones are read in one batch and cached as well
+    @Override
+    public List<Film> findAllByIds(Collection<Integer> ids) {
+        Map<Integer, Film> found = films.getAll(ids, missing -> {
+            List<Integer> missingIds = new ArrayList<>();
+            missing.forEach(missingIds::add);
+            Map<Integer, Film> loaded = new HashMap<>();
+            filmStorage.findAllByIds(missingIds).forEach(film -> loaded.put(film.getId(), frozenCopyOf(film)));
+            return loaded;
+        });
+
+        // Keep the order of requested ids, e.g. the ranking of popular films
+        List<Film> result = new ArrayList<>(found.size());
+        for (Integer id : ids) {
+            Film film = found.get(id);
+            if (film != null) {
+                result.add(copyOf(film));
+            }
+        }
+        return result;
+    }
+
+    // Also exported to the meter registry as cache_gets, cache_evictions etc. with cache="films"
+    public CacheStats stats() {
+        return films.stats();
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        invalidateAfterCommit(event.getFilmId());
+    }
+
+    // With write-behind likes the database catches up later, a film loaded in between has stale likes
+    @EventListener
+    public void onLikesFlushed(LikesFlushedEvent event) {
+        films.invalidateAll(event.getFilmIds());
+    }
+
+    // A load racing with an open transaction would cache the old row again, so drop the entry once more on commit
+    private void invalidateAfterCommit(Integer id) {
+        films.invalidate(id);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    films.invalidate(id);
+                }
+            });
+        }
+    }
+
+    private static int estimateSize(Film film) {
+        long size = FILM_BYTES
+                + 2L * (length(film.getName()) + length(film.getDescription()))
+                + (long) ELEMENT_BYTES * (film.getGenres().size() + film.getUserIdLikes().size());
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    // The cached film is shared between requests, so its collections must not change
+    private static Film frozenCopyOf(Film film) {
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getMpa(), Collections.unmodifiableList(new ArrayList<>(film.getGenres())),
+                Collections.unmodifiableList(new ArrayList<>(film.getUserIdLikes())));
+    }
+
+    private static Film copyOf(Film film) {
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getMpa(), film.getGenres(), film.getUserIdLikes());
+    }
+}
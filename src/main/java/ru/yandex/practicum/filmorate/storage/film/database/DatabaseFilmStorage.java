@@ -1,120 +1,133 @@
 package ru.yandex.practicum.filmorate.storage.film.database;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.IdIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.SearchIndex;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
-@Primary
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "database", matchIfMissing = true)
 public class DatabaseFilmStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
+    private final IdIndex filmIds = new IdIndex();
+    private final SearchIndex searchIndex = new SearchIndex();
 
     private static final String SQL_SELECT_ALL_FILMS = "SELECT f.\"id\", f.\"name\", f.\"description\", " +
-            "f.\"release_date\", f.\"duration\", f.\"mpa_id\", g.\"id\" genre_id, g.\"name\" genre_name, " +
-            "m.\"name\" mpa_name, m.\"description\" mpa_description " +
+            "f.\"release_date\", f.\"duration\", f.\"mpa_id\", fg.\"genre_id\" " +
             "FROM \"film\" f " +
             "LEFT JOIN \"film_genre\" fg ON f.\"id\" = fg.\"film_id\" " +
-            "LEFT JOIN \"genre\" g ON g.\"id\" = fg.\"genre_id\"" +
-            "LEFT JOIN \"mpa\" m ON m.\"id\" = f.\"mpa_id\"" +
-            "WHERE f.\"deleted_at\" IS NULL";
-
-    private static final String SQL_SELECT_FILM_BY_ID = "SELECT * FROM \"film\" WHERE \"id\" = ?";
+            "WHERE f.\"deleted_at\" IS NULL " +
+            "ORDER BY f.\"id\", fg.\"genre_id\"";
+    public static final String SQL_SELECT_FILM_IDS_PAGE = "SELECT \"id\" FROM \"film\" " +
+            "WHERE \"deleted_at\" IS NULL AND \"id\" > ? ORDER BY \"id\" LIMIT ?";
+
+    public static final String SQL_SELECT_LIVE_FILM_IDS = "SELECT \"id\" FROM \"film\" WHERE \"deleted_at\" IS NULL";
+    public static final String SQL_FILM_EXISTS = "SELECT 1 FROM \"film\" WHERE \"id\" = ? AND \"deleted_at\" IS NULL";
+    public static final String SQL_SELECT_FILM_TEXTS = "SELECT \"id\", \"name\", \"description\" FROM \"film\" " +
+            "WHERE \"deleted_at\" IS NULL";
+    public static final String SQL_SELECT_FILM_BY_ID = "SELECT * FROM \"film\" WHERE \"id\" = ?";
     private static final String SQL_INSERT_FILM =
             "INSERT INTO \"film\" (\"name\", \"description\", \"release_date\", \"duration\", \"mpa_id\") " +
                     "VALUES (?, ?, ?, ?, ?) ";
     private static final String SQL_GET_LAST_ID = "SELECT TOP 1 \"id\" FROM \"film\" ORDER BY \"id\" DESC";
     private static final String SQL_UPDATE_FILM =
             "UPDATE \"film\" SET \"name\" = ?, \"description\" = ?, \"release_date\" = ?, \"duration\" = ?," +
-                    " \"mpa_id\" = ? WHERE \"id\" = ?";
-    private static final String SQL_SELECT_GENRES_BY_FILM_ID = "SELECT * FROM \"film_genre\" WHERE \"film_id\" = ?";
-    private static final String SQL_SELECT_LIKES_BY_FILM_ID = "SELECT * FROM \"film_user_like\" WHERE \"film_id\" = ? " +
+                    " \"mpa_id\" = ?, \"version\" = \"version\" + 1 WHERE \"id\" = ?";
+    public static final String SQL_SELECT_FILM_VERSION = "SELECT \"version\" FROM \"film\" WHERE \"id\" = ?";
+    public static final String SQL_SELECT_GENRES_BY_FILM_ID = "SELECT * FROM \"film_genre\" WHERE \"film_id\" = ?";
+    public static final String SQL_SELECT_LIKES_BY_FILM_ID = "SELECT * FROM \"film_user_like\" WHERE \"film_id\" = ? " +
             "AND \"deleted_at\" IS NULL";
     private static final String SQL_INSERT_FILM_GENRE = "MERGE INTO \"film_genre\" (\"film_id\", \"genre_id\") " +
             "VALUES (?, ?)";
     private static final String SQL_DELETE_FILM_GENRE = "DELETE FROM \"film_genre\" WHERE \"film_id\" = ?";
+    public static final String SQL_SELECT_FILMS_BY_IDS = "SELECT \"id\", \"name\", \"description\", " +
+            "\"release_date\", \"duration\", \"mpa_id\" FROM \"film\" WHERE \"id\" IN (:ids)";
+    public static final String SQL_SELECT_GENRES_BY_FILM_IDS = "SELECT \"film_id\", \"genre_id\" " +
+            "FROM \"film_genre\" WHERE \"film_id\" IN (:ids) ORDER BY \"film_id\", \"genre_id\"";
+    public static final String SQL_SELECT_LIKES_BY_FILM_IDS = "SELECT \"film_id\", \"user_id\" " +
+            "FROM \"film_user_like\" WHERE \"film_id\" IN (:ids) AND \"deleted_at\" IS NULL";
+
+    private static final int BATCH_SIZE = 1000;
 
     @Autowired
     public DatabaseFilmStorage(JdbcTemplate jdbcTemplate, MpaStorage mpaStorage, GenreStorage genreStorage) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
         this.mpaStorage = mpaStorage;
         this.genreStorage = genreStorage;
     }
 
+    @PostConstruct
+    public void loadIndexes() {
+        filmIds.reset(jdbcTemplate.queryForList(SQL_SELECT_LIVE_FILM_IDS, Integer.class));
+        log.debug("Film id index loaded with {} films", filmIds.size());
+
+        List<Film> texts = jdbcTemplate.query(SQL_SELECT_FILM_TEXTS, (rs, rowNum) -> new Film(rs.getInt("id"),
+                rs.getString("name"), rs.getString("description"), null, 0, null, null, null));
+        searchIndex.reset(texts);
+        log.debug("Search index loaded with {} films", texts.size());
+    }
+
     @Override
     public Collection<Film> findAll() {
         SqlRowSet rs = jdbcTemplate.queryForRowSet(SQL_SELECT_ALL_FILMS);
 
-        Map<Integer, Film> films = new HashMap<>();
-        Map<Integer, Mpa> mpaCache = new HashMap<>();
-        Map<Integer, Genre> genreCache = new HashMap<>();
+        Map<Integer, Film> films = new LinkedHashMap<>();
 
         while (rs.next()) {
             Integer filmId = rs.getInt("id");
-            String filmName = rs.getString("name");
-            String filmDescription = rs.getString("description");
-            LocalDate filmReleaseDate = Objects.requireNonNull(rs.getDate("release_date")).toLocalDate();
-            int filmDuration = rs.getInt("duration");
-            Integer mpaId = rs.getInt("MPA_ID");
-            String mpaName = rs.getString("MPA_NAME");
-            String mpaDescription = rs.getString("MPA_DESCRIPTION");
-            Integer genreId = rs.getInt("GENRE_ID");
-            String genreName = rs.getString("GENRE_NAME");
-
-            Film film;
-            Mpa mpa;
-            Genre genre;
-
-            if (mpaName == null) {
-                mpa = null;
-            } else if (mpaCache.containsKey(mpaId)) {
-                mpa = mpaCache.get(mpaId);
-            } else {
-                mpa = new Mpa(mpaId, mpaName, mpaDescription);
-                mpaCache.put(mpaId, mpa);
+            Film film = films.get(filmId);
+
+            if (film == null) {
+                film = new Film(
+                        filmId,
+                        rs.getString("name"),
+                        rs.getString("description"),
+                        Objects.requireNonNull(rs.getDate("release_date")).toLocalDate(),
+                        rs.getInt("duration"),
+                        mpaStorage.findById(rs.getInt("mpa_id")).orElse(null),
+                        new ArrayList<>(),
+                        Collections.emptyList());
+                films.put(filmId, film);
             }
 
-            if (genreName == null) {
-                genre = null;
-            } else if (genreCache.containsKey(genreId)) {
-                    genre = genreCache.get(genreId);
-            } else {
-                    genre = new Genre(genreId, genreName);
-                    genreCache.put(genreId, genre);
-            }
-
-            if (films.containsKey(filmId)) {
-                film = films.get(filmId);
-                film.getGenres().add(genre);
-            } else {
-                List<Genre> genres = new ArrayList<>();
-                if (genre != null) {
-                    genres.add(genre);
-                }
-
-                film = new Film(filmId, filmName, filmDescription, filmReleaseDate, filmDuration, mpa,
-                        genres, Collections.emptyList());
-            }
-
-            films.put(filmId, film);
+            // Genres and MPA are shared instances from the reference data cache
+            genreStorage.findById(rs.getInt("genre_id")).ifPresent(film.getGenres()::add);
         }
 
         return films.values();
     }
 
+    @Override
+    public KeysetPage<Film> findPage(int afterId, int limit) {
+        List<Integer> ids = jdbcTemplate.queryForList(SQL_SELECT_FILM_IDS_PAGE, Integer.class, afterId, limit + 1);
+        return KeysetPage.of(findAllByIds(ids), limit, Film::getId);
+    }
+
     @Override
     public Film create(Film film) {
         Optional<Mpa> mpaFromDatabase = getMpaFromDatabase(film);
@@ -128,6 +141,8 @@ public class DatabaseFilmStorage implements FilmStorage {
 
         Integer id = jdbcTemplate.queryForObject(SQL_GET_LAST_ID, Integer.class);
         film.setId(id);
+        filmIds.add(id);
+        searchIndex.put(film);
 
         if (film.getGenres() != null) {
             film.getGenres().forEach(genre -> jdbcTemplate.update(SQL_INSERT_FILM_GENRE, film.getId(), genre.getId()));
@@ -140,6 +155,27 @@ public class DatabaseFilmStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        for (Film film : films) {
+            film.setMpa(getMpaFromDatabase(film).orElse(null));
+            film.setGenres(getDistinctGenresFromDb(film.getGenres()));
+            film.setUserIdLikes(new ArrayList<>());
+        }
+
+        for (int from = 0; from < films.size(); from += BATCH_SIZE) {
+            insertFilms(films.subList(from, Math.min(from + BATCH_SIZE, films.size())));
+        }
+
+        List<Object[]> filmGenres = new ArrayList<>();
+        films.forEach(film -> film.getGenres().forEach(genre -> filmGenres.add(new Object[]{film.getId(), genre.getId()})));
+        jdbcTemplate.batchUpdate(SQL_INSERT_FILM_GENRE, filmGenres);
+
+        filmIds.addAll(films.stream().map(Film::getId).collect(Collectors.toList()));
+        searchIndex.putAll(films);
+        return films;
+    }
+
     @Override
     public Optional<Film> update(Film film) {
         Optional<Mpa> mpaFromDatabase = getMpaFromDatabase(film);
@@ -151,6 +187,7 @@ public class DatabaseFilmStorage implements FilmStorage {
         if (updateCount == 0) {
             return Optional.empty();
         }
+        searchIndex.put(film);
 
         if (film.getGenres() != null) {
             jdbcTemplate.update(SQL_DELETE_FILM_GENRE, film.getId());
@@ -190,6 +227,93 @@ public class DatabaseFilmStorage implements FilmStorage {
         return Optional.empty();
     }
 
+    @Override
+    public List<Integer> search(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    @Override
+    public boolean exists(Integer id) {
+        return filmIds.contains(id, missing -> !jdbcTemplate.queryForList(SQL_FILM_EXISTS, Integer.class, missing)
+                .isEmpty());
+    }
+
+    @Override
+    public Optional<Long> findVersion(Integer id) {
+        return jdbcTemplate.queryForList(SQL_SELECT_FILM_VERSION, Long.class, id).stream().findFirst();
+    }
+
+    @Override
+    public List<Film> findAllByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Object> params = Map.of("ids", ids);
+        Map<Integer, Film> films = new HashMap<>();
+
+        namedJdbcTemplate.query(SQL_SELECT_FILMS_BY_IDS, params, rs -> {
+            Integer filmId = rs.getInt("id");
+            films.put(filmId, new Film(
+                    filmId,
+                    rs.getString("name"),
+                    rs.getString("description"),
+                    Objects.requireNonNull(rs.getDate("release_date")).toLocalDate(),
+                    rs.getInt("duration"),
+                    mpaStorage.findById(rs.getInt("mpa_id")).orElse(null),
+                    new ArrayList<>(),
+                    new ArrayList<>()
+            ));
+        });
+
+        if (films.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        namedJdbcTemplate.query(SQL_SELECT_GENRES_BY_FILM_IDS, params, rs -> {
+            genreStorage.findById(rs.getInt("genre_id")).ifPresent(films.get(rs.getInt("film_id")).getGenres()::add);
+        });
+
+        namedJdbcTemplate.query(SQL_SELECT_LIKES_BY_FILM_IDS, params, rs -> {
+            films.get(rs.getInt("film_id")).getUserIdLikes().add(rs.getInt("user_id"));
+        });
+
+        // Keep the order of requested ids, e.g. the ranking of popular films
+        List<Film> result = new ArrayList<>(films.size());
+        for (Integer id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    private void insertFilms(List<Film> films) {
+        jdbcTemplate.execute(connection -> connection.prepareStatement(SQL_INSERT_FILM, new String[]{"id"}),
+                (PreparedStatementCallback<Void>) ps -> {
+                    for (Film film : films) {
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setObject(3, film.getReleaseDate());
+                        ps.setInt(4, film.getDuration());
+                        ps.setObject(5, film.getMpa() == null ? null : film.getMpa().getId(), Types.INTEGER);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        for (Film film : films) {
+                            if (!keys.next()) {
+                                throw new IllegalStateException("No generated id returned for film " + film.getName());
+                            }
+                            film.setId(keys.getInt(1));
+                        }
+                    }
+                    return null;
+                });
+    }
+
     private Collection<Genre> findGenresByFilmId(Integer filmId) {
         return jdbcTemplate.query(SQL_SELECT_GENRES_BY_FILM_ID, (rs, rowNum) -> createGenreObject(rs), filmId);
     }
@@ -220,6 +344,12 @@ public class DatabaseFilmStorage implements FilmStorage {
         return genresToSave;
     }
 
+    private Collection<Genre> getDistinctGenresFromDb(Collection<Genre> genresPosted) {
+        Map<Integer, Genre> genresToSave = new TreeMap<>();
+        getGenresFromDb(genresPosted).forEach(genre -> genresToSave.put(genre.getId(), genre));
+        return new ArrayList<>(genresToSave.values());
+    }
+
     private Optional<Mpa> getMpaFromDatabase(Film film) {
         if (film.getMpa() != null) {
             return mpaStorage.findById(film.getMpa().getId());
@@ -1,54 +1,273 @@
 package ru.yandex.practicum.filmorate.storage.film.database;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Primary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import ru.yandex.practicum.filmorate.storage.film.CategoryLeaderboards;
+import ru.yandex.practicum.filmorate.storage.film.Leaderboard;
+import ru.yandex.practicum.filmorate.storage.film.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.film.PopularityFilter;
+import ru.yandex.practicum.filmorate.storage.film.TrendingBoard;
+import ru.yandex.practicum.filmorate.storage.film.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Component
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "database", matchIfMissing = true)
+@Slf4j
 public class DatabaseRatingStorage implements RatingDao {
     private final JdbcTemplate jdbcTemplate;
+    private final UserDao userStorage;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final CategoryLeaderboards categoryLeaderboards = new CategoryLeaderboards();
+    private final TrendingBoard trending = new TrendingBoard();
+    private final LikeMatrix likeMatrix = new LikeMatrix();
+    // Current likes for write-behind mode, as the table lags behind. Each set is guarded by its own monitor,
+    // which also orders the direct writes of the film's likes; without write-behind the sets stay empty
+    private final ConcurrentMap<Integer, CompactIntSet> activeLikes = new ConcurrentHashMap<>();
+    private final WriteBehindLikeWriter writer;
 
-    private static final String SQL_ADD_LIKE = "MERGE INTO \"film_user_like\" " +
-            "(\"film_id\", \"user_id\", \"deleted_at\") VALUES (?, ?, NULL)";
+    public static final String SQL_RESTORE_LIKE = "UPDATE \"film_user_like\" SET \"created_at\" = NOW(), " +
+            "\"deleted_at\" = NULL WHERE \"film_id\" = ? AND \"user_id\" = ? AND \"deleted_at\" IS NOT NULL";
 
-    private static final String SQL_REMOVE_LIKE = "UPDATE \"film_user_like\" SET \"deleted_at\" = NOW() " +
-            "WHERE \"film_id\" = ? AND \"user_id\" = ?";
+    private static final String SQL_INSERT_LIKE = "INSERT INTO \"film_user_like\" (\"film_id\", \"user_id\") " +
+            "VALUES (?, ?)";
 
-    private static final String SQL_FIND_MOST_POPULAR_FILMS = "SELECT TOP ? f.*, COALESCE(l.likes, 0) \"likes\" " +
+    public static final String SQL_REMOVE_LIKE = "UPDATE \"film_user_like\" SET \"deleted_at\" = NOW() " +
+            "WHERE \"film_id\" = ? AND \"user_id\" = ? AND \"deleted_at\" IS NULL";
+
+    public static final String SQL_COUNT_LIKES_OF_ALL_FILMS = "SELECT f.\"id\", COALESCE(l.likes, 0) \"likes\" " +
             "FROM \"film\" f LEFT JOIN (SELECT \"film_id\", COUNT(*) likes FROM \"film_user_like\" " +
             "WHERE \"deleted_at\" IS NULL GROUP BY \"film_id\") AS l ON f.\"id\" = l.\"film_id\" " +
-            "WHERE f.\"deleted_at\" IS NULL ORDER BY likes DESC";
+            "WHERE f.\"deleted_at\" IS NULL";
+
+    public static final String SQL_SELECT_FILM_CATEGORIES = "SELECT f.\"id\", f.\"mpa_id\", f.\"release_date\", " +
+            "fg.\"genre_id\" FROM \"film\" f LEFT JOIN \"film_genre\" fg ON f.\"id\" = fg.\"film_id\" " +
+            "WHERE f.\"deleted_at\" IS NULL";
+
+    public static final String SQL_SELECT_RECENT_LIKES = "SELECT \"film_id\", \"created_at\" " +
+            "FROM \"film_user_like\" WHERE \"deleted_at\" IS NULL AND \"created_at\" >= ?";
+
+    private static final String SQL_SELECT_ACTIVE_LIKES = "SELECT \"film_id\", \"user_id\" FROM \"film_user_like\" " +
+            "WHERE \"deleted_at\" IS NULL";
 
     @Autowired
-    public DatabaseRatingStorage(JdbcTemplate jdbcTemplate) {
+    public DatabaseRatingStorage(JdbcTemplate jdbcTemplate, UserDao userStorage,
+                                 PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                                 @Value("${filmorate.likes.write-behind.enabled}") boolean writeBehind,
+                                 @Value("${filmorate.likes.write-behind.capacity}") int capacity,
+                                 @Value("${filmorate.likes.write-behind.batch-size}") int batchSize,
+                                 @Value("${filmorate.likes.write-behind.flush-interval}") Duration flushInterval) {
         this.jdbcTemplate = jdbcTemplate;
+        this.userStorage = userStorage;
+        this.writer = writeBehind ? new WriteBehindLikeWriter(jdbcTemplate, new TransactionTemplate(transactionManager),
+                eventPublisher, capacity, batchSize, flushInterval) : null;
+    }
+
+    @PostConstruct
+    public void loadLeaderboard() {
+        // Buffered changes must reach the table before it is read back
+        flush();
+
+        Map<Integer, Long> likes = new HashMap<>();
+        jdbcTemplate.query(SQL_COUNT_LIKES_OF_ALL_FILMS, rs -> {
+            likes.put(rs.getInt("id"), rs.getLong("likes"));
+        });
+
+        leaderboard.reset(likes);
+        log.debug("Popularity leaderboard loaded with {} films", likes.size());
+        loadCategories(likes);
+        loadTrending();
+        loadLikes();
+    }
+
+    @PreDestroy
+    public void flushPendingLikes() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    // Writes all buffered like changes now, a no-op without write-behind
+    public void flush() {
+        if (writer != null) {
+            writer.flush();
+        }
     }
 
     @Override
-    public void addLike(Integer filmId, Integer userId) {
-        jdbcTemplate.update(SQL_ADD_LIKE, filmId, userId);
+    public boolean addLike(Integer filmId, Integer userId) {
+        if (!userStorage.exists(userId)) {
+            throw new ObjectNotFoundException("User with id: " + userId + " not found!");
+        }
+        if (writer != null) {
+            return bufferLike(filmId, userId, true);
+        }
+
+        // The like matrix holds the state of a pair, so it has to change in the order the table did
+        synchronized (monitorOf(filmId)) {
+            if (!writeLike(filmId, userId)) {
+                return false;
+            }
+            changeLike(filmId, userId, true);
+            return true;
+        }
     }
 
     @Override
     public void removeLike(Integer filmId, Integer userId) {
-        int rowsUpdated = jdbcTemplate.update(SQL_REMOVE_LIKE, filmId, userId);
-        if (rowsUpdated == 0) {
-            throw new ObjectNotFoundException("Like of user with id: " + userId + " not found!");
+        if (writer != null) {
+            if (!bufferLike(filmId, userId, false)) {
+                throw new ObjectNotFoundException("Like of user with id: " + userId + " not found!");
+            }
+            return;
+        }
+
+        synchronized (monitorOf(filmId)) {
+            int rowsUpdated = jdbcTemplate.update(SQL_REMOVE_LIKE, filmId, userId);
+            if (rowsUpdated == 0) {
+                throw new ObjectNotFoundException("Like of user with id: " + userId + " not found!");
+            }
+            changeLike(filmId, userId, false);
         }
     }
 
     @Override
     public Collection<Integer> findPopular(int count) {
-        return jdbcTemplate.query(SQL_FIND_MOST_POPULAR_FILMS, (rs, rowNum) -> obtainFilmId(rs), count);
+        return leaderboard.top(count);
+    }
+
+    @Override
+    public Collection<Integer> findPopular(int count, PopularityFilter filter) {
+        return categoryLeaderboards.top(filter, count);
+    }
+
+    @Override
+    public Collection<Integer> findTrending(TrendingWindow window, int count) {
+        return trending.top(window, count);
+    }
+
+    @Override
+    public int[] findLikedFilms(int userId) {
+        return likeMatrix.filmsOf(userId);
+    }
+
+    @Override
+    public int[] findLikingUsers(int filmId) {
+        return likeMatrix.usersOf(filmId);
+    }
+
+    @Override
+    public void createRatingContainer(Film film) {
+        leaderboard.add(film.getId());
+        categoryLeaderboards.put(film);
+    }
+
+    @Override
+    public void updateRatingContainer(Film film) {
+        categoryLeaderboards.put(film);
+    }
+
+    // A first like is the common case and costs a single insert.
+    // Only a transition from "not liked" to "liked" changes the rating
+    private boolean writeLike(int filmId, int userId) {
+        try {
+            jdbcTemplate.update(SQL_INSERT_LIKE, filmId, userId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            log.debug("Film with id:{} was liked by user with id:{} before", filmId, userId);
+        }
+        return jdbcTemplate.update(SQL_RESTORE_LIKE, filmId, userId) > 0;
+    }
+
+    private CompactIntSet monitorOf(int filmId) {
+        return activeLikes.computeIfAbsent(filmId, id -> new CompactIntSet());
+    }
+
+    private void changeLike(int filmId, int userId, boolean liked) {
+        int delta = liked ? 1 : -1;
+        leaderboard.increment(filmId, delta);
+        categoryLeaderboards.increment(filmId, delta);
+        trending.record(filmId, delta);
+        likeMatrix.set(filmId, userId, liked);
+    }
+
+    // The queue is appended under the film's monitor, so the last queued state of a pair is its current one
+    private boolean bufferLike(int filmId, int userId, boolean liked) {
+        CompactIntSet filmLikes = monitorOf(filmId);
+        boolean hasRoom;
+        synchronized (filmLikes) {
+            if (liked ? !filmLikes.add(userId) : !filmLikes.remove(userId)) {
+                return false;
+            }
+            changeLike(filmId, userId, liked);
+            hasRoom = writer.enqueue(filmId, userId, liked);
+        }
+
+        if (!hasRoom) {
+            writer.relieve();
+        }
+        return true;
+    }
+
+    private void loadCategories(Map<Integer, Long> likes) {
+        Map<Integer, Integer> mpaIds = new HashMap<>();
+        Map<Integer, LocalDate> releaseDates = new HashMap<>();
+        Map<Integer, List<Integer>> genreIds = new HashMap<>();
+        jdbcTemplate.query(SQL_SELECT_FILM_CATEGORIES, rs -> {
+            int filmId = rs.getInt("id");
+            mpaIds.put(filmId, rs.getObject("mpa_id", Integer.class));
+            releaseDates.put(filmId, rs.getObject("release_date", LocalDate.class));
+            List<Integer> filmGenreIds = genreIds.computeIfAbsent(filmId, id -> new ArrayList<>());
+            Integer genreId = rs.getObject("genre_id", Integer.class);
+            if (genreId != null) {
+                filmGenreIds.add(genreId);
+            }
+        });
+
+        Map<Integer, CategoryLeaderboards.Categories> categories = new HashMap<>();
+        genreIds.forEach((filmId, filmGenreIds) -> categories.put(filmId,
+                CategoryLeaderboards.Categories.of(filmGenreIds, mpaIds.get(filmId), releaseDates.get(filmId))));
+        categoryLeaderboards.reset(categories, likes);
+    }
+
+    // Likes removed since are not in the table any more, so the windows start with the likes that are left
+    private void loadTrending() {
+        Instant since = Instant.now().minus(TrendingWindow.WEEK.getLength());
+        trending.clear();
+        jdbcTemplate.query(SQL_SELECT_RECENT_LIKES, rs -> {
+            trending.record(rs.getInt("film_id"), 1, rs.getTimestamp("created_at").toInstant());
+        }, Timestamp.from(since));
     }
 
-    private Integer obtainFilmId(ResultSet rs) throws SQLException {
-        return rs.getInt("id");
+    private void loadLikes() {
+        likeMatrix.clear();
+        activeLikes.clear();
+        jdbcTemplate.query(SQL_SELECT_ACTIVE_LIKES, rs -> {
+            int filmId = rs.getInt("film_id");
+            int userId = rs.getInt("user_id");
+            likeMatrix.set(filmId, userId, true);
+            if (writer != null) {
+                activeLikes.computeIfAbsent(filmId, id -> new CompactIntSet()).add(userId);
+            }
+        });
     }
 }
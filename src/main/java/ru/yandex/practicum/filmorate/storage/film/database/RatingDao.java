@@ -1,11 +1,32 @@
 package ru.yandex.practicum.filmorate.storage.film.database;
 
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.PopularityFilter;
+import ru.yandex.practicum.filmorate.storage.film.TrendingWindow;
 import java.util.Collection;
 
 public interface RatingDao {
     Collection<Integer> findPopular(int count);
 
-    void addLike(Integer filmId, Integer userId);
+    // The filter must have at least one category set
+    Collection<Integer> findPopular(int count, PopularityFilter filter);
+
+    // Films with the most net likes within the window, films without any are left out
+    Collection<Integer> findTrending(TrendingWindow window, int count);
+
+    // Ascending ids of the films the user likes now, answered from memory
+    int[] findLikedFilms(int userId);
+
+    // Ascending ids of the users who like the film now, answered from memory
+    int[] findLikingUsers(int filmId);
+
+    // True if the film was not liked by the user before
+    boolean addLike(Integer filmId, Integer userId);
 
     void removeLike(Integer filmId, Integer userId);
+
+    void createRatingContainer(Film film);
+
+    // Moves the film to its current genres, MPA and release year
+    void updateRatingContainer(Film film);
 }
@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.storage.film.database;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.LikesFlushedEvent;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Like changes waiting to be written, collapsed per (film, user) so only the last state of a pair is stored.
+ * A background thread writes them every flush interval with batchUpdate, one transaction per batch.
+ * When more than {@code capacity} pairs are pending the caller writes one batch itself, which slows producers
+ * down to the speed of the database instead of growing the queue. Closing flushes everything that is left.
+ */
+@Slf4j
+class WriteBehindLikeWriter implements AutoCloseable {
+    static final String SQL_UPSERT_LIKE = "MERGE INTO \"film_user_like\" " +
+            "(\"film_id\", \"user_id\", \"created_at\", \"deleted_at\") KEY (\"film_id\", \"user_id\") " +
+            "VALUES (?, ?, NOW(), NULL)";
+
+    private final ConcurrentMap<Long, Boolean> pending = new ConcurrentHashMap<>();
+    private final Queue<Long> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Object flushLock = new Object();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int capacity;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+
+    WriteBehindLikeWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                          ApplicationEventPublisher eventPublisher, int capacity, int batchSize,
+                          Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Returns false if the queue is over capacity and the caller has to relieve it
+    boolean enqueue(int filmId, int userId, boolean liked) {
+        long key = key(filmId, userId);
+        if (pending.put(key, liked) == null) {
+            order.offer(key);
+            return size.incrementAndGet() <= capacity;
+        }
+        return true;
+    }
+
+    int pendingCount() {
+        return size.get();
+    }
+
+    void flush() {
+        synchronized (flushLock) {
+            while (!order.isEmpty()) {
+                writeBatch();
+            }
+        }
+    }
+
+    // Backpressure of a producer over capacity: one batch on its thread. The producer's change is applied already
+    // and a failed batch is back in the queue, so the failure is left to the flusher and never reaches the producer
+    void relieve() {
+        try {
+            synchronized (flushLock) {
+                if (!order.isEmpty()) {
+                    writeBatch();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to write a batch of pending likes, {} left to retry", pendingCount(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Like flusher did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        log.debug("Pending likes flushed on shutdown");
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} pending likes, will retry", pendingCount(), e);
+        }
+    }
+
+    private void writeBatch() {
+        Map<Long, Boolean> batch = new LinkedHashMap<>();
+        Long key;
+        while (batch.size() < batchSize && (key = order.poll()) != null) {
+            // A pair changed again after this poll is queued anew and written by a later batch
+            batch.put(key, pending.remove(key));
+        }
+        size.addAndGet(-batch.size());
+
+        List<Object[]> likes = new ArrayList<>();
+        List<Object[]> unlikes = new ArrayList<>();
+        Set<Integer> filmIds = new HashSet<>();
+        batch.forEach((pair, liked) -> {
+            Object[] args = {filmId(pair), userId(pair)};
+            (liked ? likes : unlikes).add(args);
+            filmIds.add(filmId(pair));
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(SQL_UPSERT_LIKE, likes);
+                jdbcTemplate.batchUpdate(DatabaseRatingStorage.SQL_REMOVE_LIKE, unlikes);
+            });
+        } catch (RuntimeException e) {
+            requeue(batch);
+            throw e;
+        }
+
+        log.debug("Flushed {} likes and {} unlikes", likes.size(), unlikes.size());
+        eventPublisher.publishEvent(new LikesFlushedEvent(filmIds));
+    }
+
+    // Newer changes of a pair win over the ones of the failed batch
+    private void requeue(Map<Long, Boolean> batch) {
+        batch.forEach((key, liked) -> {
+            if (pending.putIfAbsent(key, liked) == null) {
+                order.offer(key);
+                size.incrementAndGet();
+            }
+        });
+    }
+
+    private static long key(int filmId, int userId) {
+        return (long) filmId << 32 | (userId & 0xFFFFFFFFL);
+    }
+
+    private static int filmId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int userId(long key) {
+        return (int) key;
+    }
+}
@@ -1,45 +1,218 @@
 package ru.yandex.practicum.filmorate.storage.film.inmemory;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.SearchIndex;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.journal.BinaryFormat;
+import ru.yandex.practicum.filmorate.storage.journal.Journal;
+import ru.yandex.practicum.filmorate.storage.journal.RecordType;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Integer, Film> films = new HashMap<>();
-    private static Integer currentId = 0;
+    private final ConcurrentNavigableMap<Integer, Film> films = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Integer, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicInteger currentId = new AtomicInteger();
+    // Journaling and changing a film happen under this lock, so a snapshot sees every journaled change
+    private final Object writeLock = new Object();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final InMemoryRatingStorage ratingStorage;
+    private final Journal journal;
+
+    @Autowired
+    public InMemoryFilmStorage(GenreStorage genreStorage, MpaStorage mpaStorage,
+                               InMemoryRatingStorage ratingStorage, Journal journal) {
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.ratingStorage = ratingStorage;
+        this.journal = journal;
+    }
 
     @Override
     public Collection<Film> findAll() {
-        return films.values();
+        return films.values().stream()
+                .map(this::withLikes)
+                .collect(Collectors.toList());
     }
 
     @Override
-    public Film create(Film film) {
-        currentId++;
-        film.setId(currentId);
-        films.put(currentId, film);
+    public KeysetPage<Film> findPage(int afterId, int limit) {
+        List<Film> rows = films.tailMap(afterId, false).values().stream()
+                .limit(limit + 1L)
+                .map(this::withLikes)
+                .collect(Collectors.toList());
+        return KeysetPage.of(rows, limit, Film::getId);
+    }
 
+    @Override
+    public Film create(Film film) {
+        journal.awaitDurable(save(film));
         return film;
     }
 
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        long sequence = 0;
+        for (Film film : films) {
+            sequence = save(film);
+        }
+        journal.awaitDurable(sequence);
+        return films;
+    }
+
     @Override
     public Optional<Film> update(Film film) {
-        if (!films.containsKey(film.getId())) {
-            return Optional.empty();
+        Film updatedFilm;
+        long sequence;
+        synchronized (writeLock) {
+            Film storedFilm = films.get(film.getId());
+            if (storedFilm == null) {
+                return Optional.empty();
+            }
+
+            Collection<Genre> genres = film.getGenres() == null ? storedFilm.getGenres()
+                    : findGenres(film.getGenres());
+            updatedFilm = new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                    film.getDuration(), findMpa(film.getMpa()).orElse(null), genres, Collections.emptyList());
+            long version = versions.getOrDefault(film.getId(), 0L) + 1;
+            sequence = journal.append(RecordType.FILM_SAVED, out -> BinaryFormat.writeFilm(out, updatedFilm, version));
+
+            films.put(film.getId(), updatedFilm);
+            searchIndex.put(updatedFilm);
+            // Bumped after the new film is visible, so a version is never paired with older content
+            versions.put(film.getId(), version);
         }
 
-        films.put(film.getId(), film);
-        return Optional.of(film);
+        journal.awaitDurable(sequence);
+        return Optional.of(withLikes(updatedFilm));
     }
 
     @Override
     public Optional<Film> findById(Integer id) {
+        Film film = films.get(id);
+        if (film == null) {
+            return Optional.empty();
+        }
+        return Optional.of(withLikes(film));
+    }
+
+    @Override
+    public boolean exists(Integer id) {
+        return id != null && films.containsKey(id);
+    }
+
+    @Override
+    public Optional<Long> findVersion(Integer id) {
         if (!films.containsKey(id)) {
             return Optional.empty();
         }
+        return Optional.of(versions.getOrDefault(id, 0L));
+    }
+
+    @Override
+    public List<Film> findAllByIds(Collection<Integer> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(this::withLikes)
+                .collect(Collectors.toList());
+    }
 
-        return Optional.of(films.get(id));
+    @Override
+    public List<Integer> search(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    // Replays a journaled film, MPA and genres are resolved from their ids again
+    public void restore(Film film, long version) {
+        Film restoredFilm = new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), findMpa(film.getMpa()).orElse(null), findGenres(film.getGenres()),
+                Collections.emptyList());
+        films.put(film.getId(), restoredFilm);
+        searchIndex.put(restoredFilm);
+        versions.put(film.getId(), version);
+        currentId.accumulateAndGet(film.getId(), Math::max);
+        ratingStorage.createRatingContainer(restoredFilm);
+    }
+
+    public void writeSnapshot(DataOutput out) throws IOException {
+        synchronized (writeLock) {
+            for (Film film : films.values()) {
+                out.writeBoolean(true);
+                BinaryFormat.writeFilm(out, film, versions.getOrDefault(film.getId(), 0L));
+            }
+            out.writeBoolean(false);
+            out.writeInt(currentId.get());
+        }
+    }
+
+    public void readSnapshot(DataInput in) throws IOException {
+        while (in.readBoolean()) {
+            BinaryFormat.VersionedFilm versionedFilm = BinaryFormat.readFilm(in);
+            restore(versionedFilm.getFilm(), versionedFilm.getVersion());
+        }
+        currentId.accumulateAndGet(in.readInt(), Math::max);
+    }
+
+    private long save(Film film) {
+        film.setMpa(findMpa(film.getMpa()).orElse(null));
+        film.setGenres(findGenres(film.getGenres()));
+        film.setUserIdLikes(new ArrayList<>());
+
+        synchronized (writeLock) {
+            film.setId(currentId.incrementAndGet());
+            long sequence = journal.append(RecordType.FILM_SAVED, out -> BinaryFormat.writeFilm(out, film, 0L));
+            films.put(film.getId(), copyOf(film));
+            searchIndex.put(film);
+            return sequence;
+        }
+    }
+
+    // Stored films are never handed out, so concurrent updates can't be observed half-applied
+    private Film withLikes(Film film) {
+        Film copy = copyOf(film);
+        copy.setUserIdLikes(ratingStorage.findLikes(film.getId()));
+        return copy;
+    }
+
+    private Film copyOf(Film film) {
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getMpa(), new ArrayList<>(film.getGenres()), film.getUserIdLikes());
+    }
+
+    private Optional<Mpa> findMpa(Mpa mpa) {
+        return mpa == null ? Optional.empty() : mpaStorage.findById(mpa.getId());
+    }
+
+    private Collection<Genre> findGenres(Collection<Genre> genres) {
+        if (genres == null) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, Genre> distinctGenres = new TreeMap<>();
+        for (Genre genre : genres) {
+            genreStorage.findById(genre.getId()).ifPresent(found -> distinctGenres.put(found.getId(), found));
+        }
+        return new ArrayList<>(distinctGenres.values());
     }
 }
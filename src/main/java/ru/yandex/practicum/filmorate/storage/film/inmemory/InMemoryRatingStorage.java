@@ -1,41 +1,178 @@
 package ru.yandex.practicum.filmorate.storage.film.inmemory;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
-import ru.yandex.practicum.filmorate.storage.film.RatingStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import ru.yandex.practicum.filmorate.storage.film.CategoryLeaderboards;
+import ru.yandex.practicum.filmorate.storage.film.Leaderboard;
+import ru.yandex.practicum.filmorate.storage.film.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.film.PopularityFilter;
+import ru.yandex.practicum.filmorate.storage.film.TrendingBoard;
+import ru.yandex.practicum.filmorate.storage.film.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.film.database.RatingDao;
+import ru.yandex.practicum.filmorate.storage.journal.BinaryFormat;
+import ru.yandex.practicum.filmorate.storage.journal.Journal;
+import ru.yandex.practicum.filmorate.storage.journal.RecordType;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 @Component
-public class InMemoryRatingStorage implements RatingStorage {
-    private final Map<Integer, Set<Integer>> likes = new HashMap<>();
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
+public class InMemoryRatingStorage implements RatingDao {
+    // Each film's set is guarded by its own monitor, so likes of different films never contend
+    private final ConcurrentMap<Integer, CompactIntSet> likes = new ConcurrentHashMap<>();
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final CategoryLeaderboards categoryLeaderboards = new CategoryLeaderboards();
+    private final TrendingBoard trending = new TrendingBoard();
+    private final LikeMatrix likeMatrix = new LikeMatrix();
+    private final UserDao userStorage;
+    private final Journal journal;
+
+    @Autowired
+    public InMemoryRatingStorage(UserDao userStorage, Journal journal) {
+        this.userStorage = userStorage;
+        this.journal = journal;
+    }
 
     @Override
-    public void addLike(Integer filmId, Integer userId) {
-        checkFilmExists(filmId);
-        likes.get(filmId).add(userId);
+    public boolean addLike(Integer filmId, Integer userId) {
+        if (!userStorage.exists(userId)) {
+            throw new ObjectNotFoundException("User with id: " + userId + " not found!");
+        }
+
+        CompactIntSet filmLikes = likes.computeIfAbsent(filmId, id -> new CompactIntSet());
+        long sequence;
+        synchronized (filmLikes) {
+            if (!filmLikes.add(userId)) {
+                return false;
+            }
+            changeLike(filmId, userId, true);
+            trending.record(filmId, 1);
+            sequence = journal.append(RecordType.LIKE_ADDED, filmId, userId);
+        }
+        journal.awaitDurable(sequence);
+        return true;
     }
 
     @Override
     public void removeLike(Integer filmId, Integer userId) {
-        checkFilmExists(filmId);
-        if (!likes.get(filmId).remove(userId)) {
-            throw new ObjectNotFoundException("Like of user with id: " + userId + " not found!");
+        CompactIntSet filmLikes = likes.get(filmId);
+        if (filmLikes != null) {
+            Long sequence = null;
+            synchronized (filmLikes) {
+                if (filmLikes.remove(userId)) {
+                    changeLike(filmId, userId, false);
+                    trending.record(filmId, -1);
+                    sequence = journal.append(RecordType.LIKE_REMOVED, filmId, userId);
+                }
+            }
+            if (sequence != null) {
+                journal.awaitDurable(sequence);
+                return;
+            }
         }
+        throw new ObjectNotFoundException("Like of user with id: " + userId + " not found!");
+    }
+
+    @Override
+    public Collection<Integer> findPopular(int count) {
+        return leaderboard.top(count);
+    }
+
+    @Override
+    public Collection<Integer> findPopular(int count, PopularityFilter filter) {
+        return categoryLeaderboards.top(filter, count);
+    }
+
+    @Override
+    public Collection<Integer> findTrending(TrendingWindow window, int count) {
+        return trending.top(window, count);
+    }
+
+    @Override
+    public int[] findLikedFilms(int userId) {
+        return likeMatrix.filmsOf(userId);
     }
 
     @Override
-    public Map<Integer, Set<Integer>> findAll() {
-        return likes;
+    public int[] findLikingUsers(int filmId) {
+        return likeMatrix.usersOf(filmId);
     }
 
     @Override
-    public void createRatingContainer(Integer filmId) {
-        likes.put(filmId, new HashSet<>());
+    public void createRatingContainer(Film film) {
+        likes.computeIfAbsent(film.getId(), id -> new CompactIntSet());
+        leaderboard.add(film.getId());
+        categoryLeaderboards.put(film);
+    }
+
+    @Override
+    public void updateRatingContainer(Film film) {
+        categoryLeaderboards.put(film);
+    }
+
+    public List<Integer> findLikes(Integer filmId) {
+        CompactIntSet filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            return new ArrayList<>();
+        }
+
+        int[] userIds;
+        synchronized (filmLikes) {
+            userIds = filmLikes.toArray();
+        }
+        return Arrays.stream(userIds).boxed().collect(Collectors.toList());
+    }
+
+    // Replays a journaled like change, a change the snapshot already contains leaves the score as it is.
+    // The journal has no like times, so trending windows start empty after a restart
+    public void restoreLike(int filmId, int userId, boolean liked) {
+        CompactIntSet filmLikes = likes.computeIfAbsent(filmId, id -> new CompactIntSet());
+        synchronized (filmLikes) {
+            if (liked ? filmLikes.add(userId) : filmLikes.remove(userId)) {
+                changeLike(filmId, userId, liked);
+            }
+        }
+    }
+
+    private void changeLike(int filmId, int userId, boolean liked) {
+        leaderboard.increment(filmId, liked ? 1 : -1);
+        categoryLeaderboards.increment(filmId, liked ? 1 : -1);
+        likeMatrix.set(filmId, userId, liked);
+    }
+
+    public void writeSnapshot(DataOutput out) throws IOException {
+        for (Map.Entry<Integer, CompactIntSet> filmLikes : likes.entrySet()) {
+            int[] userIds;
+            synchronized (filmLikes.getValue()) {
+                userIds = filmLikes.getValue().toArray();
+            }
+            out.writeBoolean(true);
+            out.writeInt(filmLikes.getKey());
+            BinaryFormat.writeInts(out, userIds);
+        }
+        out.writeBoolean(false);
     }
 
-    private void checkFilmExists(int filmId) {
-        if (!likes.containsKey(filmId)) {
-            throw new ObjectNotFoundException("Film with id: " + filmId + " not found!");
+    public void readSnapshot(DataInput in) throws IOException {
+        while (in.readBoolean()) {
+            int filmId = in.readInt();
+            int[] userIds = BinaryFormat.readInts(in);
+            likes.put(filmId, CompactIntSet.of(userIds));
+            leaderboard.set(filmId, userIds.length);
+            categoryLeaderboards.set(filmId, userIds.length);
+            for (int userId : userIds) {
+                likeMatrix.set(filmId, userId, true);
+            }
         }
     }
 }
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage.genre;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Optional;
+
+@Component
+@Primary
+public class CachingGenreStorage implements GenreStorage {
+    private final ReferenceDataCache<Genre> cache;
+
+    @Autowired
+    public CachingGenreStorage(DatabaseGenreStorage databaseGenreStorage) {
+        this.cache = new ReferenceDataCache<>(databaseGenreStorage::findAll, Genre::getId);
+    }
+
+    @PostConstruct
+    public void refresh() {
+        cache.refresh();
+    }
+
+    @Override
+    public Collection<Genre> findAll() {
+        return cache.findAll();
+    }
+
+    @Override
+    public Optional<Genre> findById(Integer id) {
+        return cache.findById(id);
+    }
+
+    @Override
+    public int findVersion() {
+        return cache.getVersion();
+    }
+}
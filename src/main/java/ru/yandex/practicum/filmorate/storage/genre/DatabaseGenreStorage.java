@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
@@ -12,7 +11,6 @@ import java.util.Collection;
 import java.util.Optional;
 
 @Component
-@Primary
 public class DatabaseGenreStorage implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
 
@@ -40,6 +38,11 @@ public class DatabaseGenreStorage implements GenreStorage {
         return Optional.empty();
     }
 
+    @Override
+    public int findVersion() {
+        return findAll().hashCode();
+    }
+
     private Genre createGenreObject(ResultSet rs) throws SQLException {
         return new Genre(
                 rs.getInt("id"),
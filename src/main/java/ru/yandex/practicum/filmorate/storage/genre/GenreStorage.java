@@ -8,4 +8,7 @@ public interface GenreStorage {
     Collection<Genre> findAll();
 
     Optional<Genre> findById(Integer id);
+
+    // Changes whenever the content of the table does
+    int findVersion();
 }
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary layout of users, films and id sets shared by journal records and snapshots.
+ * Films are written with MPA and genre ids only, the names are resolved again when they are read back.
+ */
+public final class BinaryFormat {
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private BinaryFormat() {
+    }
+
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeInt(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+    }
+
+    public static User readUser(DataInput in) throws IOException {
+        return new User(in.readInt(), readString(in), readString(in), readString(in), readDate(in));
+    }
+
+    public static void writeFilm(DataOutput out, Film film, long version) throws IOException {
+        out.writeInt(film.getId());
+        out.writeLong(version);
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        out.writeInt(film.getDuration());
+        out.writeInt(film.getMpa() == null ? NULL_LENGTH : film.getMpa().getId());
+        writeInts(out, film.getGenres().stream().mapToInt(Genre::getId).toArray());
+    }
+
+    public static VersionedFilm readFilm(DataInput in) throws IOException {
+        int id = in.readInt();
+        long version = in.readLong();
+        String name = readString(in);
+        String description = readString(in);
+        LocalDate releaseDate = readDate(in);
+        int duration = in.readInt();
+        int mpaId = in.readInt();
+        List<Genre> genres = new ArrayList<>();
+        for (int genreId : readInts(in)) {
+            genres.add(new Genre(genreId, null));
+        }
+
+        Mpa mpa = mpaId == NULL_LENGTH ? null : new Mpa(mpaId, null, null);
+        return new VersionedFilm(new Film(id, name, description, releaseDate, duration, mpa, genres, null),
+                version);
+    }
+
+    public static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    public static int[] readInts(DataInput in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? NULL_DATE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        long epochDay = in.readLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    // A film as it was journaled, with the version its ETag was built from
+    @Data
+    public static final class VersionedFilm {
+        private final Film film;
+        private final long version;
+    }
+}
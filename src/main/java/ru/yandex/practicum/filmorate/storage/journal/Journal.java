@@ -0,0 +1,296 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the in-memory storages, split into segment files {@code wal-<n>.log}.
+ * A record is framed as [length][crc32][type][payload]. Appending only adds the record to a buffer,
+ * {@link #awaitDurable} writes the buffer with one FileChannel write and one fsync for every record
+ * appended so far, so writers arriving while a sync is running share the next one (group commit).
+ * When persistence is disabled every method does nothing.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
+@Slf4j
+public class Journal implements AutoCloseable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    private static final int FRAME_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+
+    // Guarded by appendLock
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private long appendedSequence;
+    private FileChannel channel;
+    private long segment;
+
+    // Guarded by syncLock
+    private long syncedSequence;
+    private IOException failure;
+
+    @Autowired
+    public Journal(@Value("${filmorate.memory.persistence.enabled}") boolean enabled,
+                   @Value("${filmorate.memory.persistence.dir}") Path directory) {
+        this.enabled = enabled;
+        this.directory = directory;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns the sequence number to pass to awaitDurable
+    public long append(RecordType type, Payload payload) {
+        if (!enabled) {
+            return 0;
+        }
+
+        byte[] frame = frame(type, payload);
+        synchronized (appendLock) {
+            buffer.write(frame, 0, frame.length);
+            return ++appendedSequence;
+        }
+    }
+
+    public long append(RecordType type, int id, int otherId) {
+        return append(type, out -> {
+            out.writeInt(id);
+            out.writeInt(otherId);
+        });
+    }
+
+    // Blocks until the record with this sequence number and all records before it are on disk
+    public void awaitDurable(long sequence) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            checkNotFailed();
+
+            byte[] bytes;
+            long sequenceUpTo;
+            FileChannel current;
+            synchronized (appendLock) {
+                bytes = drainBuffer();
+                sequenceUpTo = appendedSequence;
+                current = channel;
+            }
+
+            try {
+                writeFully(current, bytes);
+                current.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException("Failed to sync the journal", e);
+            }
+            syncedSequence = sequenceUpTo;
+        }
+    }
+
+    // Starts appending to a new segment after the ones left by the previous run
+    void open(long firstSegment) throws IOException {
+        Files.createDirectories(directory);
+        synchronized (appendLock) {
+            segment = firstSegment;
+            channel = openSegment(firstSegment);
+        }
+        log.info("Journal opened at {}", segmentPath(firstSegment));
+    }
+
+    // Syncs the current segment and starts the next one, returns the number of the new segment
+    long roll() throws IOException {
+        synchronized (syncLock) {
+            checkNotFailed();
+
+            byte[] bytes;
+            long sequenceUpTo;
+            FileChannel previous;
+            long next;
+            synchronized (appendLock) {
+                bytes = drainBuffer();
+                sequenceUpTo = appendedSequence;
+                previous = channel;
+                next = segment + 1;
+                channel = openSegment(next);
+                segment = next;
+            }
+
+            try (previous) {
+                writeFully(previous, bytes);
+                previous.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+            syncedSequence = sequenceUpTo;
+            return next;
+        }
+    }
+
+    // Segment numbers present on disk in ascending order
+    SortedSet<Long> segments() throws IOException {
+        SortedSet<Long> numbers = new TreeSet<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return numbers;
+    }
+
+    // Applies the records of the segment in order and stops at the first torn or corrupted one
+    int replay(long number, RecordHandler handler) throws IOException {
+        Path path = segmentPath(number);
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            byte[] record;
+            while ((record = readRecord(in)) != null) {
+                DataInputStream payload = new DataInputStream(new ByteArrayInputStream(record, 1,
+                        record.length - 1));
+                handler.apply(RecordType.of(record[0]), payload);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void deleteSegmentsBefore(long number) throws IOException {
+        for (long old : segments().headSet(number)) {
+            Files.deleteIfExists(segmentPath(old));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            FileChannel current;
+            synchronized (appendLock) {
+                current = channel;
+                channel = null;
+            }
+            if (current == null) {
+                return;
+            }
+
+            try (current) {
+                if (failure == null) {
+                    writeFully(current, drainBuffer());
+                    current.force(false);
+                }
+            }
+        }
+    }
+
+    private byte[] readRecord(DataInputStream in) throws IOException {
+        byte[] header = new byte[FRAME_HEADER_BYTES];
+        int read = in.readNBytes(header, 0, header.length);
+        if (read == 0) {
+            return null;
+        }
+
+        ByteBuffer frameHeader = ByteBuffer.wrap(header);
+        int length = frameHeader.getInt();
+        int checksum = frameHeader.getInt();
+        if (read < header.length || length <= 0) {
+            log.warn("Journal segment ends with a torn record, ignoring it");
+            return null;
+        }
+
+        byte[] record = new byte[length];
+        if (in.readNBytes(record, 0, length) < length || checksum(record) != checksum) {
+            log.warn("Journal segment ends with a torn or corrupted record, ignoring the rest");
+            return null;
+        }
+        return record;
+    }
+
+    private byte[] frame(RecordType type, Payload payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(type.ordinal());
+            payload.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - FRAME_HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(frame, FRAME_HEADER_BYTES, length);
+        ByteBuffer.wrap(frame).putInt(length).putInt((int) crc.getValue());
+        return frame;
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private byte[] drainBuffer() {
+        byte[] bytes = buffer.toByteArray();
+        buffer = new ByteArrayOutputStream();
+        return bytes;
+    }
+
+    private void checkNotFailed() {
+        if (failure != null) {
+            // The buffer may be half written, nothing is acknowledged as durable after that
+            throw new UncheckedIOException("The journal failed earlier", failure);
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("wal-%020d.log", number));
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(bytes);
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Payload {
+        void writeTo(DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface RecordHandler {
+        void apply(RecordType type, DataInput payload) throws IOException;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the data of a file written by {@link MappedOutputStream} through read-only mapped windows.
+ */
+class MappedInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedInputStream(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() < MappedOutputStream.HEADER_BYTES) {
+            throw new EOFException("Snapshot has no header");
+        }
+
+        long dataLength = channel.map(FileChannel.MapMode.READ_ONLY, 0, MappedOutputStream.HEADER_BYTES).getLong();
+        this.end = MappedOutputStream.HEADER_BYTES + dataLength;
+        if (dataLength < 0 || end > channel.size()) {
+            throw new EOFException("Snapshot is shorter than its header says");
+        }
+        map(MappedOutputStream.HEADER_BYTES);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!window.hasRemaining() && !next()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!window.hasRemaining() && !next()) {
+            return -1;
+        }
+
+        int chunk = Math.min(length, window.remaining());
+        window.get(bytes, offset, chunk);
+        return chunk;
+    }
+
+    private boolean next() throws IOException {
+        long position = windowStart + window.position();
+        if (position >= end) {
+            return false;
+        }
+        map(position);
+        return true;
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(MappedOutputStream.WINDOW_BYTES, end - position));
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a file through memory-mapped windows of {@link #WINDOW_BYTES}, each one forced to disk before
+ * the next is mapped. The data length goes to the first 8 bytes on close, since the file itself
+ * may end up longer than the data: a mapped file can't be truncated portably.
+ */
+class MappedOutputStream extends OutputStream {
+    static final int HEADER_BYTES = Long.BYTES;
+    static final int WINDOW_BYTES = 4 << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedOutputStream(FileChannel channel) throws IOException {
+        this.channel = channel;
+        map(HEADER_BYTES);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!window.hasRemaining()) {
+            next();
+        }
+        window.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!window.hasRemaining()) {
+                next();
+            }
+            int chunk = Math.min(length, window.remaining());
+            window.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long dataLength = windowStart + window.position() - HEADER_BYTES;
+        window.force();
+
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.putLong(dataLength);
+        header.force();
+        channel.force(true);
+    }
+
+    private void next() throws IOException {
+        window.force();
+        map(windowStart + window.position());
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW_BYTES);
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.inmemory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.inmemory.InMemoryRatingStorage;
+import ru.yandex.practicum.filmorate.storage.user.inmemory.InMemoryFriendStorage;
+import ru.yandex.practicum.filmorate.storage.user.inmemory.InMemoryUserStorage;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Makes the in-memory engine survive restarts. At startup the state is loaded from the latest snapshot
+ * {@code snapshot-<n>.bin} and the journal segments from n on are replayed over it. Every snapshot interval
+ * and on shutdown the journal is rolled to segment n, all storages are written to snapshot n through
+ * memory-mapped I/O, and the older segments and snapshots are deleted.
+ * <p>
+ * Snapshots are taken while writes go on, so one may already contain some changes of segment n.
+ * Records set state instead of changing it, which makes replaying them over such a snapshot safe.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
+@Slf4j
+public class MemoryPersistence {
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final int SNAPSHOT_MAGIC = 0x464D5331;
+
+    private final Journal journal;
+    private final InMemoryUserStorage userStorage;
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryRatingStorage ratingStorage;
+    private final InMemoryFriendStorage friendStorage;
+    private final Path directory;
+    private final Duration snapshotInterval;
+    private final Object snapshotLock = new Object();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public MemoryPersistence(Journal journal, InMemoryUserStorage userStorage, InMemoryFilmStorage filmStorage,
+                             InMemoryRatingStorage ratingStorage, InMemoryFriendStorage friendStorage,
+                             @Value("${filmorate.memory.persistence.dir}") Path directory,
+                             @Value("${filmorate.memory.persistence.snapshot-interval}") Duration snapshotInterval) {
+        this.journal = journal;
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.ratingStorage = ratingStorage;
+        this.friendStorage = friendStorage;
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!journal.isEnabled()) {
+            return;
+        }
+
+        long lastSnapshot = findSnapshots().stream().max(Long::compare).orElse(0L);
+        if (lastSnapshot > 0) {
+            readSnapshot(snapshotPath(lastSnapshot));
+        }
+
+        SortedSet<Long> segments = journal.segments().tailSet(lastSnapshot);
+        int records = 0;
+        for (long segment : segments) {
+            records += journal.replay(segment, this::apply);
+        }
+        log.info("Recovered the in-memory storage from snapshot {} and {} journal records", lastSnapshot, records);
+
+        // Never append after a torn tail, the next run would stop replaying there
+        long lastSegment = segments.isEmpty() ? lastSnapshot : segments.last();
+        journal.open(Math.max(lastSegment, lastSnapshot) + 1);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "memory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval.toMillis(),
+                snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (!journal.isEnabled()) {
+            return;
+        }
+
+        scheduler.shutdownNow();
+        snapshot();
+        journal.close();
+    }
+
+    // Returns the number of the new snapshot
+    public long snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long segment = journal.roll();
+            Path temporary = directory.resolve("snapshot.tmp");
+            writeSnapshot(temporary);
+            Files.move(temporary, snapshotPath(segment), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            journal.deleteSegmentsBefore(segment);
+            for (long old : findSnapshots()) {
+                if (old < segment) {
+                    Files.deleteIfExists(snapshotPath(old));
+                }
+            }
+            log.info("Snapshot {} of the in-memory storage written", segment);
+            return segment;
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to write a snapshot of the in-memory storage, will retry", e);
+        }
+    }
+
+    private void writeSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new MappedOutputStream(channel)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            userStorage.writeSnapshot(out);
+            filmStorage.writeSnapshot(out);
+            ratingStorage.writeSnapshot(out);
+            friendStorage.writeSnapshot(out);
+        }
+    }
+
+    private void readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new MappedInputStream(channel)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot of the in-memory storage: " + path);
+            }
+            userStorage.readSnapshot(in);
+            filmStorage.readSnapshot(in);
+            ratingStorage.readSnapshot(in);
+            friendStorage.readSnapshot(in);
+        }
+    }
+
+    private void apply(RecordType type, DataInput payload) throws IOException {
+        switch (type) {
+            case USER_SAVED:
+                userStorage.restore(BinaryFormat.readUser(payload));
+                break;
+            case FILM_SAVED:
+                BinaryFormat.VersionedFilm versionedFilm = BinaryFormat.readFilm(payload);
+                filmStorage.restore(versionedFilm.getFilm(), versionedFilm.getVersion());
+                break;
+            case LIKE_ADDED:
+            case LIKE_REMOVED:
+                ratingStorage.restoreLike(payload.readInt(), payload.readInt(), type == RecordType.LIKE_ADDED);
+                break;
+            default:
+                friendStorage.restoreFriendship(type, payload.readInt(), payload.readInt());
+        }
+    }
+
+    private List<Long> findSnapshots() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.bin")) {
+            for (Path file : files) {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return numbers;
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("snapshot-%020d.bin", number));
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+/**
+ * Kinds of journal records. Each record sets state instead of changing it relative to the current one,
+ * so replaying a record that a snapshot already contains leaves the state as it was.
+ */
+public enum RecordType {
+    USER_SAVED,
+    FILM_SAVED,
+    LIKE_ADDED,
+    LIKE_REMOVED,
+    FRIEND_ADDED,
+    FRIEND_CONFIRMED,
+    FRIEND_REMOVED;
+
+    private static final RecordType[] VALUES = values();
+
+    static RecordType of(int code) {
+        if (code < 0 || code >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown journal record type " + code);
+        }
+        return VALUES[code];
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage.mpa;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Optional;
+
+@Component
+@Primary
+public class CachingMpaStorage implements MpaStorage {
+    private final ReferenceDataCache<Mpa> cache;
+
+    @Autowired
+    public CachingMpaStorage(DatabaseMpaStorage databaseMpaStorage) {
+        this.cache = new ReferenceDataCache<>(databaseMpaStorage::findAll, Mpa::getId);
+    }
+
+    @PostConstruct
+    public void refresh() {
+        cache.refresh();
+    }
+
+    @Override
+    public Collection<Mpa> findAll() {
+        return cache.findAll();
+    }
+
+    @Override
+    public Optional<Mpa> findById(Integer id) {
+        return cache.findById(id);
+    }
+
+    @Override
+    public int findVersion() {
+        return cache.getVersion();
+    }
+}
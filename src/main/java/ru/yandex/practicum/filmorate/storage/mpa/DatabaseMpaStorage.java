@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
@@ -12,7 +11,6 @@ import java.util.Collection;
 import java.util.Optional;
 
 @Component
-@Primary
 public class DatabaseMpaStorage implements MpaStorage {
     private final JdbcTemplate jdbcTemplate;
 
@@ -41,6 +39,11 @@ public class DatabaseMpaStorage implements MpaStorage {
         return Optional.empty();
     }
 
+    @Override
+    public int findVersion() {
+        return findAll().hashCode();
+    }
+
     private Mpa createMpaObject(ResultSet rs) throws SQLException {
         return new Mpa(
                 rs.getInt("id"),
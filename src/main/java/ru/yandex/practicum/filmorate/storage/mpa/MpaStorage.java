@@ -8,4 +8,7 @@ public interface MpaStorage {
     Collection<Mpa> findAll();
 
     Optional<Mpa> findById(Integer id);
+
+    // Changes whenever the content of the table does
+    int findVersion();
 }
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Users who have a given user as a confirmed friend, the reverse of the friend lists.
+ * Each set is guarded by its own monitor.
+ */
+public class FollowerIndex {
+    private static final int[] NONE = new int[0];
+
+    private final ConcurrentMap<Integer, CompactIntSet> followers = new ConcurrentHashMap<>();
+
+    public void clear() {
+        followers.clear();
+    }
+
+    public void add(int userId, int followerId) {
+        CompactIntSet userFollowers = followers.computeIfAbsent(userId, id -> new CompactIntSet());
+        synchronized (userFollowers) {
+            userFollowers.add(followerId);
+        }
+    }
+
+    public void remove(int userId, int followerId) {
+        CompactIntSet userFollowers = followers.get(userId);
+        if (userFollowers != null) {
+            synchronized (userFollowers) {
+                userFollowers.remove(followerId);
+            }
+        }
+    }
+
+    public int[] followersOf(int userId) {
+        CompactIntSet userFollowers = followers.get(userId);
+        if (userFollowers == null) {
+            return NONE;
+        }
+        synchronized (userFollowers) {
+            return userFollowers.toArray();
+        }
+    }
+
+    public int count(int userId) {
+        CompactIntSet userFollowers = followers.get(userId);
+        if (userFollowers == null) {
+            return 0;
+        }
+        synchronized (userFollowers) {
+            return userFollowers.size();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Confirmed friends of every user as a compressed sparse row graph: the friend ids of all users in one array,
+ * the friends of a user between two offsets indexed by the user id. A changed user gets a whole new row in
+ * a small overlay, which is folded into new arrays once it grows, so reads never wait for writes.
+ * Rows are sorted ascending.
+ */
+public class FriendGraph {
+    private static final int[] NONE = new int[0];
+    private static final int MIN_COMPACTION_ROWS = 1024;
+
+    private volatile Csr base = Csr.of(Map.of());
+    private final ConcurrentMap<Integer, int[]> changedRows = new ConcurrentHashMap<>();
+
+    // User id -> ascending ids of the user's confirmed friends
+    public synchronized void reset(Map<Integer, int[]> friends) {
+        base = Csr.of(friends);
+        changedRows.clear();
+    }
+
+    public synchronized void set(int userId, int friendId, boolean friends) {
+        int[] row = rowOf(userId);
+        int position = Arrays.binarySearch(row, friendId);
+        if (friends == (position >= 0)) {
+            return;
+        }
+
+        int[] changed;
+        if (friends) {
+            int insertion = -position - 1;
+            changed = new int[row.length + 1];
+            System.arraycopy(row, 0, changed, 0, insertion);
+            changed[insertion] = friendId;
+            System.arraycopy(row, insertion, changed, insertion + 1, row.length - insertion);
+        } else {
+            changed = new int[row.length - 1];
+            System.arraycopy(row, 0, changed, 0, position);
+            System.arraycopy(row, position + 1, changed, position, row.length - position - 1);
+        }
+        changedRows.put(userId, changed);
+
+        if (changedRows.size() > Math.max(MIN_COMPACTION_ROWS, base.rows() / 8)) {
+            compact();
+        }
+    }
+
+    public int[] friendsOf(int userId) {
+        int[] changed = changedRows.get(userId);
+        return changed != null ? changed.clone() : base.row(userId);
+    }
+
+    // Users the user has no friendship with, by the number of the user's friends who have them as friends
+    public List<FriendSuggestion> suggest(int userId, int count) {
+        int[] friends = rowOf(userId);
+        Map<Integer, Integer> mutual = new HashMap<>();
+        for (int friendId : friends) {
+            forEachFriend(friendId, candidateId -> {
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                    mutual.merge(candidateId, 1, Integer::sum);
+                }
+            });
+        }
+
+        Comparator<FriendSuggestion> order = Comparator.comparingInt(FriendSuggestion::getMutualFriends).reversed()
+                .thenComparingInt(FriendSuggestion::getUserId);
+        // Keeps the best count suggestions with the worst of them on top
+        PriorityQueue<FriendSuggestion> best = new PriorityQueue<>(order.reversed());
+        mutual.forEach((candidateId, friendsInCommon) -> {
+            best.add(new FriendSuggestion(candidateId, friendsInCommon));
+            if (best.size() > count) {
+                best.poll();
+            }
+        });
+
+        List<FriendSuggestion> result = new ArrayList<>(best);
+        result.sort(order);
+        return result;
+    }
+
+    // Overlay rows are never changed in place, so they are shared without a copy
+    private int[] rowOf(int userId) {
+        int[] changed = changedRows.get(userId);
+        return changed != null ? changed : base.row(userId);
+    }
+
+    private void forEachFriend(int userId, IntConsumer action) {
+        int[] changed = changedRows.get(userId);
+        if (changed != null) {
+            Arrays.stream(changed).forEach(action);
+        } else {
+            base.forEach(userId, action);
+        }
+    }
+
+    // The new base is published before the rows it includes leave the overlay
+    private void compact() {
+        Map<Integer, int[]> changed = new HashMap<>(changedRows);
+        Map<Integer, int[]> rows = new HashMap<>();
+        Csr current = base;
+        for (int userId = 0; userId < current.rows(); userId++) {
+            int[] row = current.row(userId);
+            if (row.length > 0) {
+                rows.put(userId, row);
+            }
+        }
+        rows.putAll(changed);
+
+        base = Csr.of(rows);
+        changed.forEach(changedRows::remove);
+    }
+
+    private static final class Csr {
+        // Friends of user u are targets[offsets[u]] .. targets[offsets[u + 1] - 1]
+        private final int[] offsets;
+        private final int[] targets;
+
+        private Csr(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        private static Csr of(Map<Integer, int[]> rows) {
+            int maxUserId = rows.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+            int[] offsets = new int[maxUserId + 2];
+            for (int userId = 0; userId <= maxUserId; userId++) {
+                offsets[userId + 1] = offsets[userId] + rows.getOrDefault(userId, NONE).length;
+            }
+
+            int[] targets = new int[offsets[maxUserId + 1]];
+            rows.forEach((userId, row) -> System.arraycopy(row, 0, targets, offsets[userId], row.length));
+            return new Csr(offsets, targets);
+        }
+
+        private int rows() {
+            return offsets.length - 1;
+        }
+
+        private int[] row(int userId) {
+            if (userId < 0 || userId >= rows()) {
+                return NONE;
+            }
+            return Arrays.copyOfRange(targets, offsets[userId], offsets[userId + 1]);
+        }
+
+        private void forEach(int userId, IntConsumer action) {
+            if (userId < 0 || userId >= rows()) {
+                return;
+            }
+            for (int i = offsets[userId]; i < offsets[userId + 1]; i++) {
+                action.accept(targets[i]);
+            }
+        }
+    }
+}
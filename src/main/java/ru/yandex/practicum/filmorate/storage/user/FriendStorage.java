@@ -1,13 +1,30 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.Collection;
+import java.util.List;
 
 public interface FriendStorage {
 
-    void addFriend(Integer userId, User friend);
+    void addFriend(Integer userId, Integer friendId);
 
-    void removeFriend(Integer userId, User friend);
+    void removeFriend(Integer userId, Integer friendId);
 
     Collection<User> findFriends(Integer id);
+
+    KeysetPage<User> findFriends(Integer id, int afterId, int limit);
+
+    Collection<User> findCommonFriends(Integer id, Integer otherId);
+
+    int countCommonFriends(Integer id, Integer otherId);
+
+    // Ids of the users who have the user as a confirmed friend, answered from memory
+    int[] findFollowers(Integer id);
+
+    int countFollowers(Integer id);
+
+    // Friends of the user's friends ranked by the number of mutual friends, answered from memory
+    List<FriendSuggestion> findSuggestions(Integer id, int count);
 }
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring buffer of the newest feed events ordered by id, the oldest event makes room for a new one.
+ * Events are shared between the timelines they were delivered to.
+ */
+public class Timeline {
+    private final FeedEvent[] events;
+    // Slot of the oldest event
+    private int head;
+    private int size;
+
+    public Timeline(int capacity) {
+        this.events = new FeedEvent[capacity];
+    }
+
+    public synchronized void add(FeedEvent event) {
+        if (size == events.length) {
+            if (event.getEventId() < get(0).getEventId()) {
+                return;
+            }
+            head = (head + 1) % events.length;
+            size--;
+        }
+
+        // Events of concurrent writers may come slightly out of order, so the new one sinks to its place
+        int position = size;
+        while (position > 0 && get(position - 1).getEventId() > event.getEventId()) {
+            set(position, get(position - 1));
+            position--;
+        }
+        set(position, event);
+        size++;
+    }
+
+    // Up to limit events with ids below beforeId, newest first
+    public synchronized List<FeedEvent> newest(int beforeId, int limit) {
+        // Binary search for the first event at or after the cursor
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (get(middle).getEventId() < beforeId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int position = low - 1;
+        List<FeedEvent> result = new ArrayList<>(Math.min(limit, position + 1));
+        for (; position >= 0 && result.size() < limit; position--) {
+            result.add(get(position));
+        }
+        return result;
+    }
+
+    private FeedEvent get(int position) {
+        return events[(head + position) % events.length];
+    }
+
+    private void set(int position, FeedEvent event) {
+        events[(head + position) % events.length] = event;
+    }
+}
@@ -1,14 +0,0 @@
-package ru.yandex.practicum.filmorate.storage.user;
-
-import ru.yandex.practicum.filmorate.model.User;
-import java.util.Collection;
-
-public interface UserStorage {
-    Collection<User> findAll();
-
-    User create(User user);
-
-    User update(User user);
-
-    User findById(Integer id);
-}
@@ -1,15 +1,23 @@
 package ru.yandex.practicum.filmorate.storage.user.database;
 
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserDao {
     Collection<User> findAll();
 
+    KeysetPage<User> findPage(int afterId, int limit);
+
     Optional<User> create(User user);
 
+    List<User> createAll(List<User> users);
+
     Optional<User> update(User user);
 
     Optional<User> findById(Integer id);
+
+    boolean exists(Integer id);
 }
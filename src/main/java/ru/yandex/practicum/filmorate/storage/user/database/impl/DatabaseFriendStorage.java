@@ -2,54 +2,134 @@ package ru.yandex.practicum.filmorate.storage.user.database.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import ru.yandex.practicum.filmorate.storage.user.FollowerIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.user.database.FriendDao;
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
 @Component
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "database", matchIfMissing = true)
 @Slf4j
 public class DatabaseFriendStorage implements FriendDao {
     private final JdbcTemplate jdbcTemplate;
+    private final FollowerIndex followers = new FollowerIndex();
+    private final FriendGraph graph = new FriendGraph();
 
-    private static final String SQL_FIND_FRIENDS = "SELECT u.* FROM \"friendship\" f, \"user\" u " +
+    public static final String SQL_FIND_FRIENDS = "SELECT u.* FROM \"friendship\" f, \"user\" u " +
             "WHERE u.\"id\" = f.\"friend_id\" AND f.\"user_id\" = ? AND f.\"deleted_at\" IS NULL " +
             "AND f.\"confirmed_at\" IS NOT NULL";
-    private static final String SQL_ADD_FRIEND = "MERGE INTO \"friendship\" (\"user_id\", \"friend_id\") VALUES (?,?)";
-    private static final String SQL_CONFIRM_FRIENDSHIP = "UPDATE \"friendship\" SET \"confirmed_at\" = NOW() " +
-            "WHERE \"user_id\" = ? AND \"friend_id\" = ?";
-    private static final String SQL_REMOVE_FRIEND = "UPDATE \"friendship\" SET \"deleted_at\" = NOW() " +
-            "WHERE \"user_id\" = ? AND \"friend_id\" = ?";
+    public static final String SQL_FIND_FRIENDS_PAGE = "SELECT u.* FROM \"friendship\" f, \"user\" u " +
+            "WHERE u.\"id\" = f.\"friend_id\" AND f.\"user_id\" = ? AND f.\"deleted_at\" IS NULL " +
+            "AND f.\"confirmed_at\" IS NOT NULL AND f.\"friend_id\" > ? ORDER BY f.\"friend_id\" LIMIT ?";
+    public static final String SQL_FIND_COMMON_FRIENDS = "SELECT u.* FROM \"friendship\" f " +
+            "JOIN \"friendship\" o ON o.\"friend_id\" = f.\"friend_id\" AND o.\"user_id\" = ? " +
+            "AND o.\"deleted_at\" IS NULL AND o.\"confirmed_at\" IS NOT NULL " +
+            "JOIN \"user\" u ON u.\"id\" = f.\"friend_id\" " +
+            "WHERE f.\"user_id\" = ? AND f.\"deleted_at\" IS NULL AND f.\"confirmed_at\" IS NOT NULL " +
+            "ORDER BY f.\"friend_id\"";
+    public static final String SQL_COUNT_COMMON_FRIENDS = "SELECT COUNT(*) FROM \"friendship\" f " +
+            "JOIN \"friendship\" o ON o.\"friend_id\" = f.\"friend_id\" AND o.\"user_id\" = ? " +
+            "AND o.\"deleted_at\" IS NULL AND o.\"confirmed_at\" IS NOT NULL " +
+            "WHERE f.\"user_id\" = ? AND f.\"deleted_at\" IS NULL AND f.\"confirmed_at\" IS NOT NULL";
+    // A removed friendship is added again as a new pending one, a live one is left as it is
+    private static final String SQL_ADD_FRIEND = "MERGE INTO \"friendship\" f " +
+            "USING (VALUES (CAST(? AS INT), CAST(? AS INT))) s (\"user_id\", \"friend_id\") " +
+            "ON f.\"user_id\" = s.\"user_id\" AND f.\"friend_id\" = s.\"friend_id\" " +
+            "WHEN MATCHED AND f.\"deleted_at\" IS NOT NULL THEN UPDATE SET \"created_at\" = NOW(), " +
+            "\"confirmed_at\" = NULL, \"deleted_at\" = NULL " +
+            "WHEN NOT MATCHED THEN INSERT (\"user_id\", \"friend_id\") VALUES (s.\"user_id\", s.\"friend_id\")";
+    public static final String SQL_CONFIRM_FRIENDSHIP = "UPDATE \"friendship\" SET \"confirmed_at\" = NOW() " +
+            "WHERE \"user_id\" = ? AND \"friend_id\" = ? AND \"deleted_at\" IS NULL";
+    public static final String SQL_REMOVE_FRIEND = "UPDATE \"friendship\" SET \"deleted_at\" = NOW() " +
+            "WHERE \"user_id\" = ? AND \"friend_id\" = ? AND \"deleted_at\" IS NULL";
+    public static final String SQL_SELECT_CONFIRMED_FRIENDSHIPS = "SELECT \"user_id\", \"friend_id\" " +
+            "FROM \"friendship\" WHERE \"deleted_at\" IS NULL AND \"confirmed_at\" IS NOT NULL";
 
     @Autowired
     public DatabaseFriendStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @PostConstruct
+    public void loadFriendships() {
+        followers.clear();
+        Map<Integer, CompactIntSet> friends = new HashMap<>();
+        jdbcTemplate.query(SQL_SELECT_CONFIRMED_FRIENDSHIPS, rs -> {
+            int userId = rs.getInt("user_id");
+            int friendId = rs.getInt("friend_id");
+            followers.add(friendId, userId);
+            friends.computeIfAbsent(userId, id -> new CompactIntSet()).add(friendId);
+        });
+
+        Map<Integer, int[]> rows = new HashMap<>();
+        friends.forEach((userId, userFriends) -> rows.put(userId, userFriends.toArray()));
+        graph.reset(rows);
+    }
+
     @Override
     public Collection<User> findFriends(Integer id) {
         return jdbcTemplate.query(SQL_FIND_FRIENDS, (rs, rowNum) -> getNewUser(rs), id);
     }
 
     @Override
-    public void addFriend(Integer userId, User friend) {
-        jdbcTemplate.update(SQL_ADD_FRIEND,userId, friend.getId());
+    public KeysetPage<User> findFriends(Integer id, int afterId, int limit) {
+        List<User> rows = jdbcTemplate.query(SQL_FIND_FRIENDS_PAGE, (rs, rowNum) -> getNewUser(rs), id, afterId,
+                limit + 1);
+        return KeysetPage.of(rows, limit, User::getId);
+    }
+
+    @Override
+    public Collection<User> findCommonFriends(Integer id, Integer otherId) {
+        return jdbcTemplate.query(SQL_FIND_COMMON_FRIENDS, (rs, rowNum) -> getNewUser(rs), otherId, id);
+    }
+
+    @Override
+    public int countCommonFriends(Integer id, Integer otherId) {
+        Integer count = jdbcTemplate.queryForObject(SQL_COUNT_COMMON_FRIENDS, Integer.class, otherId, id);
+        return count == null ? 0 : count;
     }
 
     @Override
-    public void removeFriend(Integer userId, User friend) {
-        int updateCount = jdbcTemplate.update(SQL_REMOVE_FRIEND, userId, friend.getId());
+    public int[] findFollowers(Integer id) {
+        return followers.followersOf(id);
+    }
+
+    @Override
+    public int countFollowers(Integer id) {
+        return followers.count(id);
+    }
+
+    @Override
+    public List<FriendSuggestion> findSuggestions(Integer id, int count) {
+        return graph.suggest(id, count);
+    }
+
+    @Override
+    public void addFriend(Integer userId, Integer friendId) {
+        jdbcTemplate.update(SQL_ADD_FRIEND,userId, friendId);
+    }
+
+    @Override
+    public void removeFriend(Integer userId, Integer friendId) {
+        int updateCount = jdbcTemplate.update(SQL_REMOVE_FRIEND, userId, friendId);
         if (updateCount == 0) {
             throw new ObjectNotFoundException("There is no friendship between users with id " + userId + " and "
-                    + friend.getId());
+                    + friendId);
         }
-        log.debug("Friendship between users with id {} and {} has been removed", userId, friend.getId());
+        followers.remove(friendId, userId);
+        graph.set(userId, friendId, false);
+        log.debug("Friendship between users with id {} and {} has been removed", userId, friendId);
     }
 
     @Override
@@ -59,6 +139,8 @@ public class DatabaseFriendStorage implements FriendDao {
             throw new ObjectNotFoundException("There is no friendship between users with id " + userId + " and "
                     + friendId);
         }
+        followers.add(friendId, userId);
+        graph.set(userId, friendId, true);
         log.debug("Friendship between users with id {} and {} has been confirmed", userId, friendId);
     }
 
@@ -1,26 +1,39 @@
 package ru.yandex.practicum.filmorate.storage.user.database.impl;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdIndex;
 import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Component
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "database", matchIfMissing = true)
+@Slf4j
 public class DatabaseUserStorage implements UserDao {
     private final JdbcTemplate jdbcTemplate;
+    private final IdIndex userIds = new IdIndex();
 
     public static final String SQL_SELECT_ALL_USERS = "SELECT * FROM \"user\" WHERE \"deleted_at\" IS NULL";
+    public static final String SQL_SELECT_USERS_PAGE = "SELECT * FROM \"user\" " +
+            "WHERE \"deleted_at\" IS NULL AND \"id\" > ? ORDER BY \"id\" LIMIT ?";
+    public static final String SQL_SELECT_LIVE_USER_IDS = "SELECT \"id\" FROM \"user\" WHERE \"deleted_at\" IS NULL";
+    public static final String SQL_USER_EXISTS = "SELECT 1 FROM \"user\" WHERE \"id\" = ? AND \"deleted_at\" IS NULL";
     public static final String SQL_SELECT_USER_BY_ID = "SELECT * FROM \"user\" WHERE \"id\" = ?";
     public static final String SQL_INSERT_USER =
             "INSERT INTO \"user\" (\"email\", \"login\", \"name\", \"birthday\") VALUES (?, ?, ?, ?) ";
@@ -28,16 +41,30 @@ public class DatabaseUserStorage implements UserDao {
     public static final String SQL_UPDATE_USER =
             "UPDATE \"user\" SET \"email\" = ?, \"login\" = ?, \"name\" = ?, \"birthday\" = ? WHERE \"id\" = ?";
 
+    private static final int BATCH_SIZE = 1000;
+
     @Autowired
     public DatabaseUserStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @PostConstruct
+    public void loadIds() {
+        userIds.reset(jdbcTemplate.queryForList(SQL_SELECT_LIVE_USER_IDS, Integer.class));
+        log.debug("User id index loaded with {} users", userIds.size());
+    }
+
     @Override
     public Collection<User> findAll() {
         return jdbcTemplate.query(SQL_SELECT_ALL_USERS, (rs, rowNum) -> getNewUser(rs));
     }
 
+    @Override
+    public KeysetPage<User> findPage(int afterId, int limit) {
+        List<User> rows = jdbcTemplate.query(SQL_SELECT_USERS_PAGE, (rs, rowNum) -> getNewUser(rs), afterId, limit + 1);
+        return KeysetPage.of(rows, limit, User::getId);
+    }
+
     @Override
     public Optional<User> create(User user) {
         setNameIfNotExists(user);
@@ -45,10 +72,23 @@ public class DatabaseUserStorage implements UserDao {
 
         Integer id = jdbcTemplate.queryForObject(SQL_GET_LAST_ID, Integer.class);
         user.setId(id);
+        userIds.add(id);
 
         return Optional.of(user);
     }
 
+    @Override
+    public List<User> createAll(List<User> users) {
+        users.forEach(this::setNameIfNotExists);
+
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            insertUsers(users.subList(from, Math.min(from + BATCH_SIZE, users.size())));
+        }
+
+        userIds.addAll(users.stream().map(User::getId).collect(Collectors.toList()));
+        return users;
+    }
+
     @Override
     public Optional<User> update(User user) {
         setNameIfNotExists(user);
@@ -77,6 +117,36 @@ public class DatabaseUserStorage implements UserDao {
         return Optional.empty();
     }
 
+    @Override
+    public boolean exists(Integer id) {
+        return userIds.contains(id, missing -> !jdbcTemplate.queryForList(SQL_USER_EXISTS, Integer.class, missing)
+                .isEmpty());
+    }
+
+    private void insertUsers(List<User> users) {
+        jdbcTemplate.execute(connection -> connection.prepareStatement(SQL_INSERT_USER, new String[]{"id"}),
+                (PreparedStatementCallback<Void>) ps -> {
+                    for (User user : users) {
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getLogin());
+                        ps.setString(3, user.getName());
+                        ps.setObject(4, user.getBirthday());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        for (User user : users) {
+                            if (!keys.next()) {
+                                throw new IllegalStateException("No generated id returned for user " + user.getLogin());
+                            }
+                            user.setId(keys.getInt(1));
+                        }
+                    }
+                    return null;
+                });
+    }
+
     private void setNameIfNotExists(User user) {
         if (!StringUtils.hasText(user.getName())) {
             user.setName(user.getLogin());
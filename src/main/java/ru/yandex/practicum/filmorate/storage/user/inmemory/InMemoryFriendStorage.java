@@ -1,42 +1,257 @@
 package ru.yandex.practicum.filmorate.storage.user.inmemory;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.user.FriendStorage;
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import ru.yandex.practicum.filmorate.storage.journal.BinaryFormat;
+import ru.yandex.practicum.filmorate.storage.journal.Journal;
+import ru.yandex.practicum.filmorate.storage.journal.RecordType;
+import ru.yandex.practicum.filmorate.storage.user.FollowerIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.database.FriendDao;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 @Component
-public class InMemoryFriendStorage implements FriendStorage {
-    private final Map<Integer, Set<User>> friends = new HashMap<>();
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
+@Slf4j
+public class InMemoryFriendStorage implements FriendDao {
+    private static final Friendships EMPTY = new Friendships();
+
+    private final ConcurrentMap<Integer, Friendships> friends = new ConcurrentHashMap<>();
+    private final FollowerIndex followers = new FollowerIndex();
+    private final FriendGraph graph = new FriendGraph();
+    private final UserDao userStorage;
+    private final Journal journal;
+
+    @Autowired
+    public InMemoryFriendStorage(UserDao userStorage, Journal journal) {
+        this.userStorage = userStorage;
+        this.journal = journal;
+    }
 
     @Override
     public Collection<User> findFriends(Integer id) {
-        Set<User> userFriends = friends.get(id);
-        if (userFriends == null) {
-            return Collections.emptyList();
-        } else {
-            return userFriends.stream()
-                    .sorted(Comparator.comparingInt(User::getId))
-                    .collect(Collectors.toList());
+        return findConfirmedFriends(id, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public KeysetPage<User> findFriends(Integer id, int afterId, int limit) {
+        return KeysetPage.of(findConfirmedFriends(id, afterId, (int) Math.min(limit + 1L, Integer.MAX_VALUE)),
+                limit, User::getId);
+    }
+
+    @Override
+    public Collection<User> findCommonFriends(Integer id, Integer otherId) {
+        return toUsers(withConfirmedFriends(id, otherId, CompactIntSet::intersect).toArray());
+    }
+
+    @Override
+    public int countCommonFriends(Integer id, Integer otherId) {
+        return withConfirmedFriends(id, otherId, CompactIntSet::intersectionSize);
+    }
+
+    @Override
+    public int[] findFollowers(Integer id) {
+        return followers.followersOf(id);
+    }
+
+    @Override
+    public int countFollowers(Integer id) {
+        return followers.count(id);
+    }
+
+    @Override
+    public List<FriendSuggestion> findSuggestions(Integer id, int count) {
+        return graph.suggest(id, count);
+    }
+
+    @Override
+    public void addFriend(Integer userId, Integer friendId) {
+        Friendships userFriends = friends.computeIfAbsent(userId, id -> new Friendships());
+        long sequence;
+        synchronized (userFriends) {
+            if (!userFriends.add(friendId)) {
+                return;
+            }
+            sequence = journal.append(RecordType.FRIEND_ADDED, userId, friendId);
         }
+        journal.awaitDurable(sequence);
     }
 
     @Override
-    public void addFriend(Integer userId, User friend) {
-        if (friends.containsKey(userId)) {
-            friends.get(userId).add(friend);
-        } else {
-            Set<User> userFriends = new HashSet<>();
-            userFriends.add(friend);
-            friends.put(userId, userFriends);
+    public void removeFriend(Integer userId, Integer friendId) {
+        Friendships userFriends = friends.get(userId);
+        Long sequence = null;
+        if (userFriends != null) {
+            synchronized (userFriends) {
+                if (userFriends.remove(friendId)) {
+                    followers.remove(friendId, userId);
+                    graph.set(userId, friendId, false);
+                    sequence = journal.append(RecordType.FRIEND_REMOVED, userId, friendId);
+                }
+            }
+        }
+
+        if (sequence == null) {
+            throw new ObjectNotFoundException("There is no friendship between users with id " + userId + " and "
+                    + friendId);
         }
+        journal.awaitDurable(sequence);
+        log.debug("Friendship between users with id {} and {} has been removed", userId, friendId);
     }
 
     @Override
-    public void removeFriend(Integer userId, User friend) {
-        if (friends.containsKey(userId)) {
-            friends.get(userId).remove(friend);
+    public void confirmFriendship(Integer userId, Integer friendId) {
+        Friendships userFriends = friends.get(userId);
+        boolean confirmed = false;
+        long sequence = 0;
+        if (userFriends != null) {
+            synchronized (userFriends) {
+                if (userFriends.confirm(friendId)) {
+                    followers.add(friendId, userId);
+                    graph.set(userId, friendId, true);
+                    sequence = journal.append(RecordType.FRIEND_CONFIRMED, userId, friendId);
+                }
+                confirmed = userFriends.confirmed.contains(friendId);
+            }
+        }
+
+        if (!confirmed) {
+            throw new ObjectNotFoundException("There is no friendship between users with id " + userId + " and "
+                    + friendId);
+        }
+        journal.awaitDurable(sequence);
+        log.debug("Friendship between users with id {} and {} has been confirmed", userId, friendId);
+    }
+
+    // Replays a journaled friendship change, repeating a change the snapshot already contains does nothing
+    public void restoreFriendship(RecordType change, int userId, int friendId) {
+        Friendships userFriends = friends.computeIfAbsent(userId, id -> new Friendships());
+        synchronized (userFriends) {
+            switch (change) {
+                case FRIEND_ADDED:
+                    userFriends.add(friendId);
+                    break;
+                case FRIEND_CONFIRMED:
+                    if (userFriends.confirm(friendId)) {
+                        followers.add(friendId, userId);
+                        graph.set(userId, friendId, true);
+                    }
+                    break;
+                case FRIEND_REMOVED:
+                    userFriends.remove(friendId);
+                    followers.remove(friendId, userId);
+                    graph.set(userId, friendId, false);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not a friendship change: " + change);
+            }
+        }
+    }
+
+    public void writeSnapshot(DataOutput out) throws IOException {
+        for (Map.Entry<Integer, Friendships> userFriends : friends.entrySet()) {
+            int[] confirmed;
+            int[] pending;
+            synchronized (userFriends.getValue()) {
+                confirmed = userFriends.getValue().confirmed.toArray();
+                pending = userFriends.getValue().pending.toArray();
+            }
+            out.writeBoolean(true);
+            out.writeInt(userFriends.getKey());
+            BinaryFormat.writeInts(out, confirmed);
+            BinaryFormat.writeInts(out, pending);
+        }
+        out.writeBoolean(false);
+    }
+
+    public void readSnapshot(DataInput in) throws IOException {
+        while (in.readBoolean()) {
+            int userId = in.readInt();
+            Friendships userFriends = friends.computeIfAbsent(userId, id -> new Friendships());
+            int[] confirmed = BinaryFormat.readInts(in);
+            int[] pending = BinaryFormat.readInts(in);
+            synchronized (userFriends) {
+                Arrays.stream(confirmed).forEach(userFriends.confirmed::add);
+                Arrays.stream(pending).forEach(userFriends.pending::add);
+            }
+            Arrays.stream(confirmed).forEach(friendId -> followers.add(friendId, userId));
+        }
+
+        // Built at once, as a hub would otherwise copy its growing row for every friend
+        Map<Integer, int[]> rows = new HashMap<>();
+        friends.forEach((userId, userFriends) -> {
+            synchronized (userFriends) {
+                rows.put(userId, userFriends.confirmed.toArray());
+            }
+        });
+        graph.reset(rows);
+    }
+
+    private List<User> findConfirmedFriends(Integer id, int afterId, int limit) {
+        Friendships userFriends = friends.get(id);
+        if (userFriends == null) {
+            return new ArrayList<>();
+        }
+
+        int[] friendIds;
+        synchronized (userFriends) {
+            friendIds = userFriends.confirmed.toArray(afterId, limit);
+        }
+        return toUsers(friendIds);
+    }
+
+    // Both monitors are taken in user id order, so two opposite calls cannot deadlock
+    private <T> T withConfirmedFriends(Integer id, Integer otherId, BiFunction<CompactIntSet, CompactIntSet, T> action) {
+        Friendships userFriends = friends.getOrDefault(id, EMPTY);
+        Friendships otherFriends = friends.getOrDefault(otherId, EMPTY);
+        Object firstLock = id <= otherId ? userFriends : otherFriends;
+        Object secondLock = id <= otherId ? otherFriends : userFriends;
+
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                return action.apply(userFriends.confirmed, otherFriends.confirmed);
+            }
+        }
+    }
+
+    private List<User> toUsers(int[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(userStorage::findById)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+
+    // Outgoing friend ids of one user, guarded by the instance monitor
+    private static final class Friendships {
+        private final CompactIntSet confirmed = new CompactIntSet();
+        private final CompactIntSet pending = new CompactIntSet();
+
+        // Each returns true if the friendships changed
+        private boolean add(int friendId) {
+            return !confirmed.contains(friendId) && pending.add(friendId);
+        }
+
+        private boolean confirm(int friendId) {
+            return pending.remove(friendId) && confirmed.add(friendId);
+        }
+
+        private boolean remove(int friendId) {
+            return confirmed.remove(friendId) | pending.remove(friendId);
         }
     }
 }
@@ -1,54 +1,141 @@
 package ru.yandex.practicum.filmorate.storage.user.inmemory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
-import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.BinaryFormat;
+import ru.yandex.practicum.filmorate.storage.journal.Journal;
+import ru.yandex.practicum.filmorate.storage.journal.RecordType;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 @Slf4j
-public class InMemoryUserStorage implements UserStorage {
-    private final Map<Integer, User> users = new HashMap<>();
-    private static Integer currentId = 0;
+public class InMemoryUserStorage implements UserDao {
+    private final ConcurrentNavigableMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final AtomicInteger currentId = new AtomicInteger();
+    // Journaling and changing a user happen under this lock, so a snapshot sees every journaled change
+    private final Object writeLock = new Object();
+    private final Journal journal;
+
+    @Autowired
+    public InMemoryUserStorage(Journal journal) {
+        this.journal = journal;
+    }
 
     @Override
     public Collection<User> findAll() {
-        return users.values();
+        return users.values().stream()
+                .map(this::copyOf)
+                .collect(Collectors.toList());
     }
 
     @Override
-    public User create(User user) {
-        currentId++;
-        user.setId(currentId);
-        setNameIfNotExists(user);
-        users.put(currentId, user);
+    public KeysetPage<User> findPage(int afterId, int limit) {
+        List<User> rows = users.tailMap(afterId, false).values().stream()
+                .limit(limit + 1L)
+                .map(this::copyOf)
+                .collect(Collectors.toList());
+        return KeysetPage.of(rows, limit, User::getId);
+    }
+
+    @Override
+    public Optional<User> create(User user) {
+        journal.awaitDurable(save(user));
         log.debug("User created: {}", user);
 
-        return user;
+        return Optional.of(user);
     }
 
     @Override
-    public User update(User user) {
-        if (!users.containsKey(user.getId())) {
-            throw new ObjectNotFoundException("User with id: " + user.getId() + " not found!");
+    public List<User> createAll(List<User> users) {
+        long sequence = 0;
+        for (User user : users) {
+            sequence = save(user);
         }
-        setNameIfNotExists(user);
+        journal.awaitDurable(sequence);
+        return users;
+    }
 
-        users.put(user.getId(), user);
+    @Override
+    public Optional<User> update(User user) {
+        setNameIfNotExists(user);
+        long sequence;
+        synchronized (writeLock) {
+            if (!users.containsKey(user.getId())) {
+                return Optional.empty();
+            }
+            sequence = journal.append(RecordType.USER_SAVED, out -> BinaryFormat.writeUser(out, user));
+            users.put(user.getId(), copyOf(user));
+        }
+        journal.awaitDurable(sequence);
         log.debug("User updated: {}", user);
 
-        return user;
+        return Optional.of(user);
+    }
+
+    @Override
+    public Optional<User> findById(Integer id) {
+        User user = users.get(id);
+        if (user == null) {
+            return Optional.empty();
+        }
+        return Optional.of(copyOf(user));
     }
 
     @Override
-    public User findById(Integer id) {
-        if (!users.containsKey(id)) {
-            throw new ObjectNotFoundException("User with id: " + id + " not found!");
+    public boolean exists(Integer id) {
+        return id != null && users.containsKey(id);
+    }
+
+    // Replays a journaled user, the id counter never goes back below a restored id
+    public void restore(User user) {
+        users.put(user.getId(), user);
+        currentId.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    public void writeSnapshot(DataOutput out) throws IOException {
+        synchronized (writeLock) {
+            for (User user : users.values()) {
+                out.writeBoolean(true);
+                BinaryFormat.writeUser(out, user);
+            }
+            out.writeBoolean(false);
+            out.writeInt(currentId.get());
         }
-        return users.get(id);
+    }
+
+    public void readSnapshot(DataInput in) throws IOException {
+        while (in.readBoolean()) {
+            restore(BinaryFormat.readUser(in));
+        }
+        currentId.accumulateAndGet(in.readInt(), Math::max);
+    }
+
+    private long save(User user) {
+        setNameIfNotExists(user);
+        synchronized (writeLock) {
+            user.setId(currentId.incrementAndGet());
+            long sequence = journal.append(RecordType.USER_SAVED, out -> BinaryFormat.writeUser(out, user));
+            users.put(user.getId(), copyOf(user));
+            return sequence;
+        }
+    }
+
+    private User copyOf(User user) {
+        return new User(user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
     }
 
     private void setNameIfNotExists(User user) {
@@ -15,6 +15,6 @@ public class DateValidator implements ConstraintValidator<IsAfter, LocalDate> {
 
     @Override
     public boolean isValid(LocalDate date, ConstraintValidatorContext constraintValidatorContext) {
-        return date.isAfter(validDate);
+        return date != null && date.isAfter(validDate);
     }
 }
\ No newline at end of file
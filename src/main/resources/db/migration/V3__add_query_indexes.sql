@@ -0,0 +1,27 @@
+-- Each index below is shaped after the statements of the Database*Storage classes.
+-- Columns used in equality/IS NULL filters come first, then the range/ordering column,
+-- then the remaining selected columns so the lookup is answered from the index alone.
+
+-- DatabaseFilmStorage.SQL_SELECT_FILM_IDS_PAGE, DatabaseRatingStorage.SQL_COUNT_LIKES_OF_ALL_FILMS
+CREATE INDEX IF NOT EXISTS "idx_film_alive" ON "film" ("deleted_at", "id");
+
+-- DatabaseUserStorage.SQL_SELECT_USERS_PAGE
+CREATE INDEX IF NOT EXISTS "idx_user_alive" ON "user" ("deleted_at", "id");
+
+-- DatabaseFilmStorage.SQL_SELECT_LIKES_BY_FILM_ID(S), DatabaseRatingStorage.SQL_REMOVE_LIKE
+CREATE INDEX IF NOT EXISTS "idx_film_user_like_film" ON "film_user_like" ("film_id", "deleted_at", "user_id");
+
+-- DatabaseRatingStorage.SQL_COUNT_LIKES_OF_ALL_FILMS groups active likes by film
+CREATE INDEX IF NOT EXISTS "idx_film_user_like_alive" ON "film_user_like" ("deleted_at", "film_id");
+
+-- Likes of a user
+CREATE INDEX IF NOT EXISTS "idx_film_user_like_user" ON "film_user_like" ("user_id", "deleted_at", "film_id");
+
+-- DatabaseFriendStorage.SQL_FIND_FRIENDS(_PAGE): friends of a user ordered by friend id
+CREATE INDEX IF NOT EXISTS "idx_friendship_user" ON "friendship" ("user_id", "deleted_at", "friend_id", "confirmed_at");
+
+-- Users who have the given user as a friend
+CREATE INDEX IF NOT EXISTS "idx_friendship_friend" ON "friendship" ("friend_id", "deleted_at", "user_id", "confirmed_at");
+
+-- Films of a genre
+CREATE INDEX IF NOT EXISTS "idx_film_genre_genre" ON "film_genre" ("genre_id", "film_id");
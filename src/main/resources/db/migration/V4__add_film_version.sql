@@ -0,0 +1,2 @@
+-- Bumped on every update of a film (including its genres), backs the ETag of GET /films/{id}
+ALTER TABLE "film" ADD COLUMN IF NOT EXISTS "version" BIGINT DEFAULT 0 NOT NULL;
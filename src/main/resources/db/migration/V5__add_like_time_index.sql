@@ -0,0 +1,2 @@
+-- DatabaseRatingStorage.SQL_SELECT_RECENT_LIKES: likes of the last week for the trending windows
+CREATE INDEX IF NOT EXISTS "idx_film_user_like_created" ON "film_user_like" ("created_at", "deleted_at", "film_id");
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+/**
+ * MockMvc does not finish async requests by itself, e.g. {@code perform(mockMvc, get("/films"))} waits for
+ * the bulkhead to complete the request and returns the actions of the dispatch that writes the response.
+ */
+public final class AsyncDispatch {
+
+    private AsyncDispatch() {
+    }
+
+    public static ResultActions perform(MockMvc mockMvc, RequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        if (!result.getRequest().isAsyncStarted()) {
+            return actions;
+        }
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.filmorate.AsyncDispatch.perform;
+
+// One scan thread with one queue slot, the scans are held until the test releases them
+@SpringBootTest(properties = {
+        "filmorate.bulkhead.scans.threads=1",
+        "filmorate.bulkhead.scans.queue-capacity=1",
+        "filmorate.bulkhead.scans.timeout=1s"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class BulkheadTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @SpyBean
+    private FilmService filmService;
+
+    @Test
+    public void shouldKeepServingPointReadsAndWritesWhileScansAreSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(filmService).findPage(anyInt(), any());
+
+        MvcResult runningScan = mockMvc.perform(get("/films")).andReturn();
+        MvcResult queuedScan = mockMvc.perform(get("/films")).andReturn();
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isServiceUnavailable());
+
+        perform(mockMvc, post("/films")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Film\",\"description\":\"Description\",\"releaseDate\":\"2000-01-01\"," +
+                        "\"duration\":100,\"mpa\":{\"id\":1}}"))
+                .andExpect(status().isOk());
+        perform(mockMvc, get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Film"));
+        perform(mockMvc, get("/genres"))
+                .andExpect(status().isOk());
+
+        // Neither scan finishes within its timeout, the queued one never gets the thread
+        mockMvc.perform(asyncDispatch(runningScan))
+                .andExpect(status().isServiceUnavailable());
+        mockMvc.perform(asyncDispatch(queuedScan))
+                .andExpect(status().isServiceUnavailable());
+
+        release.countDown();
+        perform(mockMvc, get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Film"));
+
+        assertThat(registry.get("filmorate.bulkhead.rejected").tag("name", "scans").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("filmorate.bulkhead.timeouts").tag("name", "scans").counter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("filmorate.bulkhead.timeouts").tag("name", "point-reads").counter().count())
+                .isZero();
+    }
+
+    @Test
+    public void shouldAnswerRequestWhoseTaskFailsWithError() throws Exception {
+        doThrow(new AssertionError("Broken scan")).when(filmService).findPage(anyInt(), any());
+
+        MvcResult failedScan = mockMvc.perform(get("/films")).andReturn();
+        assertThat(failedScan.getAsyncResult(500)).isInstanceOf(AssertionError.class);
+    }
+}
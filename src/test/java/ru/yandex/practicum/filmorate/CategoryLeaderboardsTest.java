@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.CategoryLeaderboards;
+import ru.yandex.practicum.filmorate.storage.film.PopularityFilter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CategoryLeaderboardsTest {
+    private final CategoryLeaderboards leaderboards = new CategoryLeaderboards();
+
+    @Test
+    public void shouldRankWithinEachCategory() {
+        leaderboards.put(film(1, 1, 2000, 1, 2));
+        leaderboards.put(film(2, 1, 2001, 2));
+        leaderboards.put(film(3, 2, 2000, 1));
+        leaderboards.increment(3, 2);
+        leaderboards.increment(2, 1);
+
+        assertThat(leaderboards.top(new PopularityFilter(1, null, null), 10)).containsExactly(3, 1);
+        assertThat(leaderboards.top(new PopularityFilter(2, null, null), 10)).containsExactly(2, 1);
+        assertThat(leaderboards.top(new PopularityFilter(null, 1, null), 10)).containsExactly(2, 1);
+        assertThat(leaderboards.top(new PopularityFilter(null, null, 2000), 1)).containsExactly(3);
+        assertThat(leaderboards.top(new PopularityFilter(3, null, null), 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldIntersectCombinedFilters() {
+        leaderboards.put(film(1, 1, 2000, 1));
+        leaderboards.put(film(2, 1, 2000, 2));
+        leaderboards.put(film(3, 2, 2000, 1));
+        leaderboards.put(film(4, 1, 2001, 1));
+        leaderboards.increment(4, 5);
+        leaderboards.increment(3, 4);
+
+        assertThat(leaderboards.top(new PopularityFilter(1, 1, null), 10)).containsExactly(4, 1);
+        assertThat(leaderboards.top(new PopularityFilter(1, 1, 2000), 10)).containsExactly(1);
+        assertThat(leaderboards.top(new PopularityFilter(2, 2, null), 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldMoveFilmWithItsScore() {
+        leaderboards.put(film(1, 1, 2000, 1));
+        leaderboards.put(film(2, 1, 2000, 1));
+        leaderboards.increment(1, 3);
+
+        leaderboards.put(film(1, 2, 2000, 2));
+
+        assertThat(leaderboards.top(new PopularityFilter(1, null, null), 10)).containsExactly(2);
+        assertThat(leaderboards.top(new PopularityFilter(null, 1, null), 10)).containsExactly(2);
+        assertThat(leaderboards.top(new PopularityFilter(null, null, 2000), 10)).containsExactly(1, 2);
+    }
+
+    @Test
+    public void shouldResetFromLoadedCategories() {
+        leaderboards.put(film(5, 1, 2000, 1));
+        leaderboards.reset(Map.of(
+                1, CategoryLeaderboards.Categories.of(List.of(1), 1, LocalDate.of(2000, 1, 1)),
+                2, CategoryLeaderboards.Categories.of(List.of(1), null, null)), Map.of(2, 7L));
+
+        assertThat(leaderboards.top(new PopularityFilter(1, null, null), 10)).containsExactly(2, 1);
+        assertThat(leaderboards.top(new PopularityFilter(null, 1, null), 10)).containsExactly(1);
+    }
+
+    private static Film film(int id, int mpaId, int year, Integer... genreIds) {
+        List<Genre> genres = new ArrayList<>();
+        for (Integer genreId : genreIds) {
+            genres.add(new Genre(genreId, null));
+        }
+        return new Film(id, "Film " + id, "Description", LocalDate.of(year, 1, 1), 100,
+                new Mpa(mpaId, null, null), genres, null);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.CompactIntSet;
+import java.util.Random;
+import java.util.TreeSet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactIntSetTest {
+    @Test
+    public void shouldKeepValuesSortedAndUnique() {
+        CompactIntSet set = CompactIntSet.of(5, 1, 70_000, -3, 5, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        assertThat(set.size()).isEqualTo(6);
+        assertThat(set.toArray()).containsExactly(Integer.MIN_VALUE, -3, 1, 5, 70_000, Integer.MAX_VALUE);
+        assertThat(set.contains(70_000)).isTrue();
+        assertThat(set.contains(4)).isFalse();
+        assertThat(set.add(1)).isFalse();
+        assertThat(set.remove(4)).isFalse();
+        assertThat(set.remove(5)).isTrue();
+        assertThat(set.toArray()).containsExactly(Integer.MIN_VALUE, -3, 1, 70_000, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldReturnValuesAfterCursor() {
+        CompactIntSet set = CompactIntSet.of(1, 2, 3, 65_535, 65_536, 200_000);
+
+        assertThat(set.toArray(0, 2)).containsExactly(1, 2);
+        assertThat(set.toArray(2, 3)).containsExactly(3, 65_535, 65_536);
+        assertThat(set.toArray(65_536, 10)).containsExactly(200_000);
+        assertThat(set.toArray(200_000, 10)).isEmpty();
+        assertThat(set.toArray(0, 0)).isEmpty();
+    }
+
+    @Test
+    public void shouldSwitchBetweenArrayAndBitmapContainers() {
+        CompactIntSet set = new CompactIntSet();
+        for (int i = 0; i < 10_000; i++) {
+            set.add(i * 2);
+        }
+        assertThat(set.size()).isEqualTo(10_000);
+        assertThat(set.contains(19_998)).isTrue();
+        assertThat(set.contains(19_999)).isFalse();
+        assertThat(set.toArray(9_000, 3)).containsExactly(9_002, 9_004, 9_006);
+
+        for (int i = 0; i < 9_000; i++) {
+            set.remove(i * 2);
+        }
+        assertThat(set.size()).isEqualTo(1_000);
+        assertThat(set.toArray(0, 2)).containsExactly(18_000, 18_002);
+    }
+
+    @Test
+    public void shouldIntersectAllContainerKinds() {
+        CompactIntSet small = CompactIntSet.of(3, 6, 9, 12, 100_002);
+        CompactIntSet large = new CompactIntSet();
+        CompactIntSet otherLarge = new CompactIntSet();
+        for (int i = 0; i < 30_000; i++) {
+            large.add(i * 3);
+            otherLarge.add(i * 2);
+        }
+
+        assertThat(small.intersect(large).toArray()).containsExactly(3, 6, 9, 12);
+        assertThat(large.intersect(small).toArray()).containsExactly(3, 6, 9, 12);
+        assertThat(small.intersectionSize(CompactIntSet.of(6, 12, 15))).isEqualTo(2);
+        assertThat(large.intersectionSize(otherLarge)).isEqualTo(10_000);
+        assertThat(large.intersect(otherLarge).toArray(0, 2)).containsExactly(6, 12);
+    }
+
+    @Test
+    public void shouldBehaveLikeTreeSet() {
+        Random random = new Random(42);
+        CompactIntSet set = new CompactIntSet();
+        CompactIntSet other = new CompactIntSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        TreeSet<Integer> expectedOther = new TreeSet<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt(150_000) - 10_000;
+            if (random.nextInt(3) == 0) {
+                assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+            } else {
+                assertThat(set.add(value)).isEqualTo(expected.add(value));
+            }
+            int otherValue = random.nextInt(150_000) - 10_000;
+            other.add(otherValue);
+            expectedOther.add(otherValue);
+        }
+
+        assertThat(set.size()).isEqualTo(expected.size());
+        assertThat(set.toArray()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+        assertThat(set.toArray(70_000, 5)).containsExactly(expected.tailSet(70_000, false).stream()
+                .limit(5).mapToInt(Integer::intValue).toArray());
+
+        expected.retainAll(expectedOther);
+        assertThat(set.intersectionSize(other)).isEqualTo(expected.size());
+        assertThat(set.intersect(other).toArray()).containsExactly(expected.stream()
+                .mapToInt(Integer::intValue).toArray());
+    }
+}
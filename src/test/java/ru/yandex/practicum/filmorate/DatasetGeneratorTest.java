@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.generator.DatasetGenerator;
+import ru.yandex.practicum.filmorate.storage.user.database.FriendDao;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "filmorate.generator.users=200",
+        "filmorate.generator.films=50",
+        "filmorate.generator.likes=2000",
+        "filmorate.generator.max-friends=50"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles("generate")
+public class DatasetGeneratorTest {
+    private static final int USERS = 200;
+    private static final int FILMS = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatasetGenerator generator;
+
+    @Autowired
+    private FriendDao friendStorage;
+
+    @Test
+    public void shouldGenerateSkewedReproducibleDataset() {
+        // The runner has generated the first dataset on startup
+        assertThat(count("user")).isEqualTo(USERS);
+        assertThat(count("film")).isEqualTo(FILMS);
+        assertThat(count("film_user_like")).isEqualTo(2000);
+        assertThat(count("friendship")).isPositive();
+
+        List<Integer> likesPerFilm = jdbcTemplate.queryForList("SELECT COUNT(*) FROM \"film_user_like\" " +
+                "GROUP BY \"film_id\" ORDER BY COUNT(*) DESC", Integer.class);
+        assertThat(likesPerFilm.get(0)).isGreaterThan(4 * likesPerFilm.get(likesPerFilm.size() - 1));
+
+        // The follower index is loaded again once the friendships are written
+        int hubId = mostFollowedUserId();
+        assertThat(friendStorage.countFollowers(hubId)).isEqualTo(followers(hubId));
+        // So is the friend graph, a follower of the hub is suggested the hub's other friends
+        assertThat(friendStorage.findSuggestions(friendOf(hubId), 10)).isNotEmpty();
+
+        // A second run with the same seed produces the same rows, shifted by the ids of the first run
+        generator.generate();
+
+        Set<String> firstLikes = likes(0, 0, 1, FILMS);
+        Set<String> secondLikes = likes(FILMS, USERS, FILMS + 1, 2 * FILMS);
+        assertThat(secondLikes).isEqualTo(firstLikes);
+
+        Set<String> firstFriendships = friendships(0, 1, USERS);
+        Set<String> secondFriendships = friendships(USERS, USERS + 1, 2 * USERS);
+        assertThat(secondFriendships).isEqualTo(firstFriendships);
+    }
+
+    private int mostFollowedUserId() {
+        return jdbcTemplate.queryForObject("SELECT \"friend_id\" FROM \"friendship\" GROUP BY \"friend_id\" " +
+                "ORDER BY COUNT(*) DESC, \"friend_id\" LIMIT 1", Integer.class);
+    }
+
+    private int friendOf(int userId) {
+        return jdbcTemplate.queryForObject("SELECT MIN(\"user_id\") FROM \"friendship\" WHERE \"friend_id\" = ?",
+                Integer.class, userId);
+    }
+
+    private int followers(int userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"friendship\" WHERE \"friend_id\" = ?",
+                Integer.class, userId);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"" + table + "\"", Integer.class);
+    }
+
+    private Set<String> likes(int filmShift, int userShift, int fromFilmId, int toFilmId) {
+        return jdbcTemplate.queryForList("SELECT \"film_id\", \"user_id\" FROM \"film_user_like\" " +
+                        "WHERE \"film_id\" BETWEEN ? AND ?", fromFilmId, toFilmId).stream()
+                .map(row -> ((Integer) row.get("film_id") - filmShift) + ":" + ((Integer) row.get("user_id") - userShift))
+                .collect(Collectors.toSet());
+    }
+
+    private Set<String> friendships(int shift, int fromUserId, int toUserId) {
+        return jdbcTemplate.queryForList("SELECT \"user_id\", \"friend_id\" FROM \"friendship\" " +
+                        "WHERE \"user_id\" BETWEEN ? AND ?", fromUserId, toUserId).stream()
+                .map(row -> ((Integer) row.get("user_id") - shift) + ":" + ((Integer) row.get("friend_id") - shift))
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.database.FriendDao;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.filmorate.AsyncDispatch.perform;
+import static ru.yandex.practicum.filmorate.SqlStatementMatchers.sqlStatementsAtMost;
+
+@SpringBootTest(properties = "filmorate.feed.celebrity-followers=2")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class FeedTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FeedService feedService;
+    @Autowired
+    private FriendDao friendStorage;
+
+    private final List<Integer> users = new ArrayList<>();
+    private final List<Integer> films = new ArrayList<>();
+
+    @BeforeEach
+    public void createUsersAndFilms() {
+        for (int i = 0; i < 5; i++) {
+            users.add(userService.createUser(new User(null, "user" + i + "@mail.ru", "user" + i, null,
+                    LocalDate.of(1990, 1, 1))).getId());
+        }
+        for (int i = 0; i < 3; i++) {
+            films.add(filmService.create(new Film(null, "Film " + i, "Description", LocalDate.of(2000, 1, 1),
+                    100, new Mpa(1, null, null), null, null)).getId());
+        }
+    }
+
+    @Test
+    public void shouldDeliverFriendsEventsNewestFirst() {
+        befriend(0, 1);
+        befriend(0, 2);
+        like(1, 0);
+        like(3, 1);
+        befriend(2, 3);
+        like(2, 2);
+
+        assertThat(feedService.findFeed(users.get(0), null, null).getItems())
+                .extracting(FeedEvent::getUserId, FeedEvent::getEventType, FeedEvent::getEntityId)
+                .containsExactly(
+                        tuple(users.get(2), FeedEventType.LIKE, films.get(2)),
+                        tuple(users.get(2), FeedEventType.FRIEND, users.get(3)),
+                        tuple(users.get(1), FeedEventType.LIKE, films.get(0)));
+        // Friendship goes one way until the other user confirms it
+        assertThat(feedService.findFeed(users.get(1), null, null).getItems()).isEmpty();
+
+        KeysetPage<FeedEvent> first = feedService.findFeed(users.get(0), null, 2);
+        assertThat(first.getItems()).hasSize(2);
+        KeysetPage<FeedEvent> second = feedService.findFeed(users.get(0), first.getNextCursor(), 2);
+        assertThat(second.getItems()).extracting(FeedEvent::getEntityId).containsExactly(films.get(0));
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    // With three followers the fourth user is a celebrity, the feeds read the user's events on demand
+    @Test
+    public void shouldMergeCelebrityEventsIntoFeed() {
+        befriend(0, 1);
+        befriend(0, 3);
+        befriend(1, 3);
+        befriend(2, 3);
+        like(3, 0);
+        like(1, 1);
+        befriend(4, 3);
+        like(3, 2);
+
+        assertThat(feedService.findFeed(users.get(0), null, null).getItems())
+                .extracting(FeedEvent::getUserId, FeedEvent::getEntityId)
+                .containsExactly(
+                        tuple(users.get(3), films.get(2)),
+                        tuple(users.get(1), films.get(1)),
+                        tuple(users.get(3), films.get(0)),
+                        tuple(users.get(1), users.get(3)));
+        assertThat(feedService.findFeed(users.get(4), null, null).getItems())
+                .extracting(FeedEvent::getEntityId)
+                .containsExactly(films.get(2), films.get(0));
+
+        userService.removeFriendship(users.get(0), users.get(3));
+        assertThat(feedService.findFeed(users.get(0), null, null).getItems())
+                .extracting(FeedEvent::getUserId)
+                .containsOnly(users.get(1));
+    }
+
+    // A friendship added again after its removal is a live row again, in the table and in the follower index
+    @Test
+    public void shouldFollowFriendAddedAgainAfterRemoval() {
+        befriend(0, 1);
+        userService.removeFriendship(users.get(0), users.get(1));
+        like(1, 0);
+
+        assertThat(friendStorage.countFollowers(users.get(1))).isZero();
+        assertThat(feedService.findFeed(users.get(0), null, null).getItems()).isEmpty();
+
+        befriend(0, 1);
+        like(1, 1);
+
+        assertThat(userService.findFriends(users.get(0), 0, null).getItems()).extracting(User::getId)
+                .containsExactly(users.get(1));
+        assertThat(friendStorage.findFollowers(users.get(1))).containsExactly(users.get(0));
+        assertThat(feedService.findFeed(users.get(0), null, null).getItems())
+                .extracting(FeedEvent::getEntityId)
+                .containsExactly(films.get(1));
+        // Only one side confirmed the friendship, the other side's row is pending again
+        assertThat(friendStorage.countFollowers(users.get(0))).isZero();
+    }
+
+    // The feed is read from memory
+    @Test
+    public void shouldServeFeedEndpoint() throws Exception {
+        befriend(0, 1);
+        like(1, 0);
+        like(1, 1);
+
+        MvcResult result = perform(mockMvc, get("/users/" + users.get(0) + "/feed?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].userId").value(users.get(1)))
+                .andExpect(jsonPath("$[0].eventType").value("LIKE"))
+                .andExpect(jsonPath("$[0].entityId").value(films.get(1)))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andExpect(sqlStatementsAtMost(0))
+                .andReturn();
+        perform(mockMvc, get("/users/" + users.get(0) + "/feed?before="
+                + result.getResponse().getHeader("X-Next-Cursor")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].entityId").value(films.get(0)))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+        perform(mockMvc, get("/users/9999/feed"))
+                .andExpect(status().isNotFound());
+        perform(mockMvc, get("/users/" + users.get(0) + "/feed?limit=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void befriend(int user, int friend) {
+        userService.createFriendship(users.get(user), users.get(friend));
+    }
+
+    private void like(int user, int film) {
+        filmService.addLike(films.get(film), users.get(user));
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.database.CachingFilmStorage;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.cache.films.max-memory=20KB")
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+public class FilmCacheTest {
+    @Autowired
+    private CachingFilmStorage filmStorage;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void shouldInvalidateFilmOnUpdateAndLikes() {
+        Film film = filmService.create(createFilm("Cached"));
+        User user = userService.createUser(new User(null, "cache@mail.ru", "cache", null, LocalDate.of(1990, 1, 1)));
+
+        filmService.findById(film.getId());
+        long hits = filmStorage.stats().hitCount();
+        filmService.findById(film.getId());
+        assertThat(filmStorage.stats().hitCount()).isEqualTo(hits + 1);
+
+        filmService.addLike(film.getId(), user.getId());
+        assertThat(filmService.findById(film.getId()).getUserIdLikes()).containsExactly(user.getId());
+
+        filmService.removeLike(film.getId(), user.getId());
+        assertThat(filmService.findById(film.getId()).getUserIdLikes()).isEmpty();
+
+        Film update = createFilm("Cached and updated");
+        update.setId(film.getId());
+        filmService.update(update);
+        assertThat(filmService.findById(film.getId()).getName()).isEqualTo("Cached and updated");
+    }
+
+    @Test
+    public void shouldKeepHotFilmDuringScan() {
+        // Caffeine starts counting frequencies once the cache is half full
+        scanFilms(100);
+
+        Film hot = filmService.create(createFilm("Hot"));
+        for (int i = 0; i < 10; i++) {
+            filmService.findById(hot.getId());
+        }
+
+        scanFilms(500);
+        assertThat(filmStorage.stats().evictionCount()).isPositive();
+
+        long hits = filmStorage.stats().hitCount();
+        filmService.findById(hot.getId());
+        assertThat(filmStorage.stats().hitCount()).isEqualTo(hits + 1);
+    }
+
+    private void scanFilms(int count) {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            films.add(createFilm("Scanned " + i));
+        }
+        filmService.createAll(films).forEach(result -> filmService.findById(result.getId()));
+    }
+
+    private Film createFilm(String name) {
+        return new Film(null, name, "Description", LocalDate.of(2000, 1, 1), 100,
+                new Mpa(1, null, null), List.of(new Genre(1, null)), null);
+    }
+}
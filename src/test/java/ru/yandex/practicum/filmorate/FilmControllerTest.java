@@ -7,8 +7,16 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.AsyncDispatch.perform;
+import static ru.yandex.practicum.filmorate.SqlStatementMatchers.sqlStatementsAtMost;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.MethodOrderer;
@@ -18,6 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import java.util.ArrayList;
@@ -38,7 +47,7 @@ public class FilmControllerTest {
 
     @Test
     public void test001ShouldReturnEmptyArray() throws Exception {
-        mockMvc.perform(get(ENDPOINT))
+        perform(mockMvc, get(ENDPOINT))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
@@ -55,7 +64,7 @@ public class FilmControllerTest {
 
         String body = createJson(name, description, releaseDate, duration, mpaId, null);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -77,7 +86,7 @@ public class FilmControllerTest {
 
         String body = createJson(name, description, releaseDate, duration, null, null);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -95,7 +104,7 @@ public class FilmControllerTest {
 
         String body = createJson(name, description, releaseDate, duration, null, null);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -111,7 +120,7 @@ public class FilmControllerTest {
 
         String body = createJson(name, description, releaseDate, duration, null, null);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -127,7 +136,7 @@ public class FilmControllerTest {
 
         String body = createJson(name, description, releaseDate, duration, null, null);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -145,7 +154,7 @@ public class FilmControllerTest {
 
         String body = createJson(id, name, description, releaseDate, duration, mpaId, null);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -168,7 +177,7 @@ public class FilmControllerTest {
 
         String body = createJson(id, name, description, releaseDate, duration, null, null);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -183,7 +192,7 @@ public class FilmControllerTest {
         String releaseDate = "1989-04-17";
         String duration = "37";
 
-        mockMvc.perform(get(ENDPOINT))
+        perform(mockMvc, get(ENDPOINT))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -202,7 +211,7 @@ public class FilmControllerTest {
         String releaseDate = "1989-04-17";
         int duration = 37;
 
-        mockMvc.perform(get(ENDPOINT + "/popular"))
+        perform(mockMvc, get(ENDPOINT + "/popular"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -224,7 +233,7 @@ public class FilmControllerTest {
 
         String body = createJson(name, description, releaseDate, duration, mpaId, null);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -245,7 +254,7 @@ public class FilmControllerTest {
         String releaseDate = "1989-04-17";
         String duration = "37";
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id))
@@ -259,7 +268,7 @@ public class FilmControllerTest {
     public void test013ShouldReturnNotFound() throws Exception {
         int id = 999;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
@@ -269,7 +278,7 @@ public class FilmControllerTest {
         // Create a user first
         String body = "{\"login\": \"test_login\",\"email\":\"a@f.k\",\"birthday\":\"2006-06-06\"}";
 
-        mockMvc.perform(post("/users")
+        perform(mockMvc, post("/users")
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -278,7 +287,7 @@ public class FilmControllerTest {
         int filmId = 2;
         int userId = 1;
 
-        mockMvc.perform(put(ENDPOINT + "/" + filmId + "/like/" + userId))
+        perform(mockMvc, put(ENDPOINT + "/" + filmId + "/like/" + userId))
                 .andDo(print())
                 .andExpect(status().isOk());
     }
@@ -291,7 +300,7 @@ public class FilmControllerTest {
         String releaseDate = "1999-12-31";
         String duration = "1000";
 
-        mockMvc.perform(get(ENDPOINT + "/popular?count=1"))
+        perform(mockMvc, get(ENDPOINT + "/popular?count=1"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -304,7 +313,7 @@ public class FilmControllerTest {
 
     @Test
     public void test016ShouldReturnTwoPopularFilmsInCorrectOrder() throws Exception {
-        mockMvc.perform(get(ENDPOINT + "/popular?count=2"))
+        perform(mockMvc, get(ENDPOINT + "/popular?count=2"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
@@ -317,17 +326,27 @@ public class FilmControllerTest {
         int filmId = 2;
         int userId = 1;
 
-        mockMvc.perform(delete(ENDPOINT + "/" + filmId + "/like/" + userId))
+        perform(mockMvc, delete(ENDPOINT + "/" + filmId + "/like/" + userId))
                 .andDo(print())
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void test017_1ShouldNotRemoveLikeTwice() throws Exception {
+        int filmId = 2;
+        int userId = 1;
+
+        perform(mockMvc, delete(ENDPOINT + "/" + filmId + "/like/" + userId))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void test018ShouldReturnTwoPopularFilmInAnyOrder() throws Exception {
         int id1 = 1;
         int id2 = 2;
 
-        mockMvc.perform(get(ENDPOINT + "/popular"))
+        perform(mockMvc, get(ENDPOINT + "/popular"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
@@ -339,7 +358,7 @@ public class FilmControllerTest {
         int filmId = 2;
         int userId = -500;
 
-        mockMvc.perform(delete(ENDPOINT + "/" + filmId + "/like/" + userId))
+        perform(mockMvc, delete(ENDPOINT + "/" + filmId + "/like/" + userId))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
@@ -354,7 +373,7 @@ public class FilmControllerTest {
 
         String body = createJson(name, description, releaseDate, duration, null, null);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -380,7 +399,7 @@ public class FilmControllerTest {
 
         String body = createJson(id, name, description, releaseDate, duration, mpaId, genreIds);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -409,7 +428,7 @@ public class FilmControllerTest {
         Integer[] genres = { 2 };
         String[] genreNames = { "Драма" };
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id))
@@ -435,7 +454,7 @@ public class FilmControllerTest {
         Integer[][] genreIds = { { 2 }, {}, {} };
         String[][] genreNames = { { "Драма" }, {}, {} };
 
-        mockMvc.perform(get(ENDPOINT))
+        perform(mockMvc, get(ENDPOINT))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(3)))
@@ -477,7 +496,7 @@ public class FilmControllerTest {
 
         String body = createJson(id, name, description, releaseDate, duration, mpaId, null);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -502,7 +521,7 @@ public class FilmControllerTest {
         int mpaId = 5;
         String mpaName = "NC-17";
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id))
@@ -529,7 +548,7 @@ public class FilmControllerTest {
 
         String body = createJson(id, name, description, releaseDate, duration, mpaId, genreIds);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -562,7 +581,7 @@ public class FilmControllerTest {
         Integer[] genreIds = { 1, 2, 3 };
         String[] genreNames = { "Комедия", "Драма", "Мультфильм" };
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id))
@@ -594,7 +613,7 @@ public class FilmControllerTest {
 
         String body = createJson(id, name, description, releaseDate, duration, mpaId, genreIds);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -623,7 +642,7 @@ public class FilmControllerTest {
         Integer[] genreIds = { 1, 2 };
         String[] genreNames = { "Комедия", "Драма" };
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id))
@@ -640,6 +659,263 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$.genres[1].name").value(genreNames[1]));
     }
 
+    @Test
+    public void test030ShouldReturnFirstPageOfFilmsWithNextCursor() throws Exception {
+        perform(mockMvc, get(ENDPOINT + "?limit=2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+    }
+
+    @Test
+    public void test031ShouldReturnLastPageOfFilmsWithoutNextCursor() throws Exception {
+        perform(mockMvc, get(ENDPOINT + "?after=2&limit=2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(3));
+    }
+
+    @Test
+    public void test032ShouldNotAcceptNonPositivePageLimit() throws Exception {
+        perform(mockMvc, get(ENDPOINT + "?limit=0"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void test033ShouldImportFilmsInBatchAndReportEachItem() throws Exception {
+        List<Map<String, Object>> films = List.of(
+                createJsonMap("Batch film one", "First of batch", "2010-10-10", 90, 1, new Integer[]{ 2, 1, 2 }),
+                createJsonMap("", "Film without name", "2010-10-10", 90, null, null),
+                createJsonMap("Batch film two", "Second of batch", "2011-11-11", 95, 9, null),
+                createJsonMap("Batch film three", "Third of batch", "2012-12-12", 100, null, null));
+
+        perform(mockMvc, post(ENDPOINT + "/batch")
+                        .contentType(CONTENT_TYPE)
+                        .content(new ObjectMapper().writeValueAsString(films)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(jsonPath("$[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$[1].errors", hasSize(1)))
+                .andExpect(jsonPath("$[2].status").value("REJECTED"))
+                .andExpect(jsonPath("$[2].errors[0]").value("mpa: MPA with id 9 not found"))
+                .andExpect(jsonPath("$[3].status").value("CREATED"))
+                .andExpect(jsonPath("$[3].id").value(5));
+
+        perform(mockMvc, get(ENDPOINT + "/4"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Batch film one"))
+                .andExpect(jsonPath("$.mpa.id").value(1))
+                .andExpect(jsonPath("$.genres", hasSize(2)))
+                .andExpect(jsonPath("$.genres[0].id").value(1))
+                .andExpect(jsonPath("$.genres[1].id").value(2));
+    }
+
+    @Test
+    public void test034ShouldStayWithinSqlStatementBudgets() throws Exception {
+        perform(mockMvc, get(ENDPOINT + "/popular?count=50"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(3));
+
+        perform(mockMvc, get(ENDPOINT + "/1"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(4));
+
+        perform(mockMvc, get(ENDPOINT + "?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(4));
+
+        perform(mockMvc, put(ENDPOINT + "/1/like/1"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(2));
+
+        perform(mockMvc, delete(ENDPOINT + "/1/like/1"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(1));
+    }
+
+    @Test
+    public void test035ShouldAnswerUnchangedFilmWithNotModified() throws Exception {
+        String eTag = perform(mockMvc, get(ENDPOINT + "/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String genresTag = mockMvc.perform(get("/genres")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String mpaTag = mockMvc.perform(get("/mpa")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).endsWith("-" + genresTag.replace("\"", "") + "-" + mpaTag.replace("\"", "") + "\"");
+
+        perform(mockMvc, get(ENDPOINT + "/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""))
+                .andExpect(sqlStatementsAtMost(1));
+
+        perform(mockMvc, put(ENDPOINT + "/1/like/1"))
+                .andExpect(status().isOk());
+
+        // Likes are not part of the film representation
+        perform(mockMvc, get(ENDPOINT + "/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        String body = createJson(1, "Film with a new version", "Description", "1989-04-17", 37, 2, new Integer[]{3});
+        perform(mockMvc, put(ENDPOINT)
+                        .contentType(CONTENT_TYPE)
+                        .content(body))
+                .andExpect(status().isOk());
+
+        perform(mockMvc, get(ENDPOINT + "/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+                .andExpect(jsonPath("$.name").value("Film with a new version"))
+                .andExpect(jsonPath("$.genres[0].id").value(3));
+
+        perform(mockMvc, get(ENDPOINT + "/9999").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void test036ShouldServeRepeatedReadsFromCacheUntilFilmChanges() throws Exception {
+        perform(mockMvc, get(ENDPOINT + "/2"))
+                .andExpect(status().isOk());
+
+        // Only the version lookup for the ETag is left
+        perform(mockMvc, get(ENDPOINT + "/2"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(1));
+
+        perform(mockMvc, put(ENDPOINT + "/2/like/1"))
+                .andExpect(status().isOk());
+
+        perform(mockMvc, get(ENDPOINT + "/2"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(4));
+
+        String body = createJson(2, "Film read after update", "Description", "1990-01-01", 90, 1, null);
+        perform(mockMvc, put(ENDPOINT)
+                        .contentType(CONTENT_TYPE)
+                        .content(body))
+                .andExpect(status().isOk());
+
+        perform(mockMvc, get(ENDPOINT + "/2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Film read after update"));
+    }
+
+    @Test
+    public void test037ShouldRankFilmsLikedWithinWindow() throws Exception {
+        perform(mockMvc, delete(ENDPOINT + "/1/like/1"))
+                .andExpect(status().isOk());
+        perform(mockMvc, put(ENDPOINT + "/3/like/1"))
+                .andExpect(status().isOk());
+
+        perform(mockMvc, get(ENDPOINT + "/popular?window=1h&count=100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", hasItem(3)))
+                .andExpect(jsonPath("$[*].id", not(hasItem(1))));
+
+        perform(mockMvc, delete(ENDPOINT + "/3/like/1"))
+                .andExpect(status().isOk());
+        perform(mockMvc, get(ENDPOINT + "/popular?window=7d&count=100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", not(hasItem(3))));
+
+        perform(mockMvc, get(ENDPOINT + "/popular?window=1y"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void test038ShouldRankFilmsWithinGenreMpaAndYear() throws Exception {
+        Integer[] genres = { 6 };
+        int liked = createFilm(createJson("Liked documentary", "Description", "1931-05-01", 60, 4, genres));
+        int other = createFilm(createJson("Other documentary", "Description", "1931-06-01", 60, 4, genres));
+        createFilm(createJson("Other year", "Description", "1932-06-01", 60, 4, genres));
+        perform(mockMvc, put(ENDPOINT + "/" + liked + "/like/1"))
+                .andExpect(status().isOk());
+
+        perform(mockMvc, get(ENDPOINT + "/popular?genreId=6&year=1931"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(liked, other)));
+
+        // Moving the film to another genre takes it out of the genre's board, the like stays with it
+        Integer[] otherGenres = { 5 };
+        perform(mockMvc, put(ENDPOINT)
+                        .contentType(CONTENT_TYPE)
+                        .content(createJson(liked, "Liked documentary", "Description", "1931-05-01", 60, 4,
+                                otherGenres)))
+                .andExpect(status().isOk());
+
+        perform(mockMvc, get(ENDPOINT + "/popular?genreId=6&mpaId=4&year=1931"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(other)));
+        perform(mockMvc, get(ENDPOINT + "/popular?mpaId=4&year=1931&count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(liked)));
+        perform(mockMvc, get(ENDPOINT + "/popular?genreId=6&year=1800"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        perform(mockMvc, get(ENDPOINT + "/popular?window=1h&genreId=6"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void test039ShouldSearchFilmsByNameAndDescription() throws Exception {
+        int hedgehog = createFilm(createJson("Ёжик в тумане", "Мультфильм о дружбе", "1975-01-01", 10, 1, null));
+        int fog = createFilm(createJson("The Fog", "Туман над городом", "1980-01-01", 89, 1, null));
+
+        perform(mockMvc, get(ENDPOINT + "/search?q=туман"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(hedgehog, fog)));
+        perform(mockMvc, get(ENDPOINT + "/search?q=ежик тум"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(hedgehog)));
+        perform(mockMvc, get(ENDPOINT + "/search?q=мульфильм&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Ёжик в тумане"));
+
+        perform(mockMvc, put(ENDPOINT)
+                        .contentType(CONTENT_TYPE)
+                        .content(createJson(fog, "Туман", "Фильм Джона Карпентера", "1980-01-01", 89, 1, null)))
+                .andExpect(status().isOk());
+        perform(mockMvc, get(ENDPOINT + "/search?q=карпентер"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(fog)));
+        // The matched films are cached now, a repeated search stays in memory
+        perform(mockMvc, get(ENDPOINT + "/search?q=карпентер"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(fog)))
+                .andExpect(sqlStatementsAtMost(0));
+
+        // Nothing matches, so not even the films are read
+        perform(mockMvc, get(ENDPOINT + "/search?q=zzzzzz"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)))
+                .andExpect(sqlStatementsAtMost(0));
+        perform(mockMvc, get(ENDPOINT + "/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    private int createFilm(String body) throws Exception {
+        String response = perform(mockMvc, post(ENDPOINT)
+                        .contentType(CONTENT_TYPE)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return new ObjectMapper().readTree(response).get("id").asInt();
+    }
+
     private String createJson(Integer id, String name, String description, String releaseDate, int duration,
                               Integer mpaId, Integer[] genres) throws JsonProcessingException {
         Map<String, Object> object = createJsonMap(name, description, releaseDate, duration, mpaId, genres);
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import java.util.HashMap;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class FriendGraphTest {
+    private final FriendGraph graph = new FriendGraph();
+
+    @Test
+    public void shouldRankFriendsOfFriendsByMutualFriends() {
+        graph.reset(Map.of(
+                1, new int[]{2, 3, 4},
+                2, new int[]{1, 5, 6},
+                3, new int[]{5, 6, 7},
+                4, new int[]{2, 5}));
+
+        assertThat(graph.suggest(1, 10))
+                .extracting(FriendSuggestion::getUserId, FriendSuggestion::getMutualFriends)
+                .containsExactly(tuple(5, 3), tuple(6, 2), tuple(7, 1));
+        assertThat(graph.suggest(1, 2)).extracting(FriendSuggestion::getUserId).containsExactly(5, 6);
+        assertThat(graph.suggest(7, 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldApplyChangesOverBuiltRows() {
+        graph.reset(Map.of(1, new int[]{2}, 2, new int[]{3, 4}));
+
+        graph.set(1, 5, true);
+        graph.set(5, 4, true);
+        graph.set(2, 3, false);
+        graph.set(2, 3, false);
+
+        assertThat(graph.friendsOf(1)).containsExactly(2, 5);
+        assertThat(graph.friendsOf(2)).containsExactly(4);
+        assertThat(graph.suggest(1, 10))
+                .extracting(FriendSuggestion::getUserId, FriendSuggestion::getMutualFriends)
+                .containsExactly(tuple(4, 2));
+    }
+
+    // Enough changed rows to fold the overlay into new arrays more than once
+    @Test
+    public void shouldKeepFriendsAcrossCompactions() {
+        graph.reset(new HashMap<>());
+        for (int userId = 1; userId <= 3000; userId++) {
+            graph.set(userId, 0, true);
+            graph.set(0, userId, true);
+        }
+        graph.set(0, 1500, false);
+
+        assertThat(graph.friendsOf(0)).hasSize(2999).doesNotContain(1500);
+        assertThat(graph.friendsOf(2999)).containsExactly(0);
+        assertThat(graph.suggest(1500, 2)).extracting(FriendSuggestion::getUserId).containsExactly(1, 2);
+        assertThat(graph.suggest(1, 3)).extracting(FriendSuggestion::getUserId).containsExactly(2, 3, 4);
+    }
+}
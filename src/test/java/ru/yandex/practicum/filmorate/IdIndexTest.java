@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.IdIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdIndexTest {
+    @Test
+    public void shouldConfirmMissWithLookupAndIndexFoundId() {
+        IdIndex index = new IdIndex();
+        index.reset(List.of(1, 2));
+        // Id 3 was written past the index, id 4 does not exist
+        Set<Integer> table = Set.of(1, 2, 3);
+        List<Integer> lookups = new ArrayList<>();
+
+        assertThat(index.contains(1, id -> lookups.add(id) && table.contains(id))).isTrue();
+        assertThat(index.contains(3, id -> lookups.add(id) && table.contains(id))).isTrue();
+        assertThat(index.contains(3, id -> lookups.add(id) && table.contains(id))).isTrue();
+        assertThat(index.contains(4, id -> lookups.add(id) && table.contains(id))).isFalse();
+        assertThat(index.contains(null, id -> lookups.add(id) && table.contains(id))).isFalse();
+
+        assertThat(lookups).containsExactly(3, 4);
+        assertThat(index.size()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.inmemory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.database.UserDao;
+import ru.yandex.practicum.filmorate.storage.user.inmemory.InMemoryUserStorage;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.storage=memory")
+@AutoConfigureTestDatabase
+public class InMemoryStorageTest {
+    private static final int THREADS = 8;
+
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserDao userStorage;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void shouldUseInMemoryStorages() {
+        assertThat(filmStorage).isInstanceOf(InMemoryFilmStorage.class);
+        assertThat(userStorage).isInstanceOf(InMemoryUserStorage.class);
+    }
+
+    @Test
+    public void shouldResolveMpaAndDistinctGenresOnCreate() {
+        Film film = filmService.create(newFilm("Film with genres", List.of(new Genre(2, null),
+                new Genre(1, null), new Genre(2, null))));
+
+        Film found = filmService.findById(film.getId());
+        assertThat(found.getMpa().getName()).isEqualTo("PG-13");
+        assertThat(found.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+    }
+
+    @Test
+    public void shouldAllocateUniqueIdsConcurrently() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String login = "concurrent_" + i;
+            tasks.add(() -> userService.createUser(newUser(login)).getId());
+        }
+
+        Set<Integer> ids = runConcurrently(tasks);
+        assertThat(ids).hasSize(400);
+    }
+
+    @Test
+    public void shouldCountConcurrentLikesOfSameFilm() throws Exception {
+        Film popular = filmService.create(newFilm("Popular", null));
+        Film other = filmService.create(newFilm("Other", null));
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String login = "fan_" + i;
+            tasks.add(() -> {
+                User user = userService.createUser(newUser(login));
+                filmService.addLike(popular.getId(), user.getId());
+                filmService.addLike(popular.getId(), user.getId());
+                if (user.getId() % 2 == 0) {
+                    filmService.addLike(other.getId(), user.getId());
+                    filmService.removeLike(other.getId(), user.getId());
+                }
+                return user.getId();
+            });
+        }
+        runConcurrently(tasks);
+
+        assertThat(filmService.findById(popular.getId()).getUserIdLikes()).hasSize(200);
+        assertThat(filmService.findById(other.getId()).getUserIdLikes()).isEmpty();
+        assertThat(filmService.findPopular(1)).extracting(Film::getId).containsExactly(popular.getId());
+    }
+
+    private Set<Integer> runConcurrently(List<Callable<Integer>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = executor.invokeAll(tasks);
+            Set<Integer> results = new HashSet<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Film newFilm(String name, List<Genre> genres) {
+        return new Film(null, name, "Description", LocalDate.of(2000, 1, 1), 100,
+                new Mpa(3, null, null), genres == null ? null : new ArrayList<>(genres), null);
+    }
+
+    private User newUser(String login) {
+        return new User(null, login + "@mail.ru", login, null, LocalDate.of(1990, 1, 1));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.Leaderboard;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LeaderboardTest {
+    @Test
+    public void shouldRankByScoreAndThenById() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.reset(Map.of(1, 0L, 2, 5L, 3, 5L, 4, 1L));
+
+        assertThat(leaderboard.top(10)).containsExactly(2, 3, 4, 1);
+        assertThat(leaderboard.top(2)).containsExactly(2, 3);
+    }
+
+    @Test
+    public void shouldMoveEntryOnIncrement() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.add(1);
+        leaderboard.add(2);
+
+        leaderboard.increment(2, 1);
+        assertThat(leaderboard.top(2)).containsExactly(2, 1);
+
+        leaderboard.increment(1, 2);
+        leaderboard.increment(2, -1);
+        assertThat(leaderboard.top(2)).containsExactly(1, 2);
+        assertThat(leaderboard.score(1)).isEqualTo(2);
+        assertThat(leaderboard.score(2)).isZero();
+    }
+
+    @Test
+    public void shouldKeepAddedEntryScore() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.increment(1, 3);
+        leaderboard.add(1);
+
+        assertThat(leaderboard.score(1)).isEqualTo(3);
+        assertThat(leaderboard.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCountConcurrentUpdatesOfSameId() throws InterruptedException {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.add(1);
+        leaderboard.add(2);
+
+        int threads = 8;
+        int updatesPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < updatesPerThread; j++) {
+                    leaderboard.increment(1, 1);
+                    leaderboard.increment(2, 1);
+                    leaderboard.increment(2, -1);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        List<Integer> top = leaderboard.top(10);
+        assertThat(top).containsExactly(1, 2);
+        assertThat(leaderboard.score(1)).isEqualTo((long) threads * updatesPerThread);
+        assertThat(leaderboard.score(2)).isZero();
+    }
+}
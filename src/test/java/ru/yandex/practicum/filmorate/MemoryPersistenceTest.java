@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.PopularityFilter;
+import ru.yandex.practicum.filmorate.storage.journal.MemoryPersistence;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A crash is simulated by copying the files of a running context, every acknowledged change is on disk by then
+public class MemoryPersistenceTest {
+    @TempDir
+    Path directory;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @AfterEach
+    public void closeContexts() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void shouldRecoverFromJournalAfterCrash() throws IOException {
+        ConfigurableApplicationContext context = start(directory.resolve("live"));
+        Film film = createFilm(context, "Journaled");
+        User user = createUser(context, "first");
+        User friend = createUser(context, "second");
+        filmService(context).addLike(film.getId(), user.getId());
+        filmService(context).update(new Film(film.getId(), "Renamed", "Description", LocalDate.of(2000, 1, 1),
+                120, new Mpa(2, null, null), List.of(new Genre(3, null)), null));
+        userService(context).createFriendship(user.getId(), friend.getId());
+
+        ConfigurableApplicationContext recovered = start(crashCopyOf(directory.resolve("live")));
+
+        Film recoveredFilm = filmService(recovered).findById(film.getId());
+        assertThat(recoveredFilm.getName()).isEqualTo("Renamed");
+        assertThat(recoveredFilm.getMpa().getName()).isEqualTo("PG");
+        assertThat(recoveredFilm.getGenres()).extracting(Genre::getName).containsExactly("Мультфильм");
+        assertThat(recoveredFilm.getUserIdLikes()).containsExactly(user.getId());
+        assertThat(filmService(recovered).findPopular(10, new PopularityFilter(3, 2, 2000))).extracting(Film::getId)
+                .containsExactly(film.getId());
+        assertThat(filmService(recovered).findVersionTag(film.getId()))
+                .isEqualTo(filmService(context).findVersionTag(film.getId()));
+        assertThat(userService(recovered).findFriends(user.getId(), 0, null).getItems()).extracting(User::getId)
+                .containsExactly(friend.getId());
+        assertThat(createUser(recovered, "third").getId()).isEqualTo(friend.getId() + 1);
+    }
+
+    @Test
+    public void shouldReplayJournalTailOverSnapshot() throws IOException {
+        ConfigurableApplicationContext context = start(directory.resolve("live"));
+        Film film = createFilm(context, "Snapshotted");
+        User user = createUser(context, "first");
+        User other = createUser(context, "second");
+        filmService(context).addLike(film.getId(), user.getId());
+
+        context.getBean(MemoryPersistence.class).snapshot();
+        filmService(context).removeLike(film.getId(), user.getId());
+        filmService(context).addLike(film.getId(), other.getId());
+        Film laterFilm = createFilm(context, "After snapshot");
+
+        ConfigurableApplicationContext recovered = start(crashCopyOf(directory.resolve("live")));
+
+        assertThat(filmService(recovered).findById(film.getId()).getUserIdLikes()).containsExactly(other.getId());
+        assertThat(filmService(recovered).findById(laterFilm.getId()).getName()).isEqualTo("After snapshot");
+        assertThat(filmService(recovered).findPopular(10)).extracting(Film::getId)
+                .containsExactly(film.getId(), laterFilm.getId());
+    }
+
+    @Test
+    public void shouldIgnoreTornRecordAtJournalEnd() throws IOException {
+        ConfigurableApplicationContext context = start(directory.resolve("live"));
+        User user = createUser(context, "durable");
+        Path copy = crashCopyOf(directory.resolve("live"));
+
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(copy)) {
+            lastSegment = files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow();
+        }
+        Files.write(lastSegment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        ConfigurableApplicationContext recovered = start(copy);
+
+        assertThat(userService(recovered).findPage(0, null).getItems()).extracting(User::getId)
+                .containsExactly(user.getId());
+    }
+
+    @Test
+    public void shouldWriteSnapshotOnShutdown() throws IOException {
+        ConfigurableApplicationContext context = start(directory);
+        User user = createUser(context, "before_restart");
+        context.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()).collect(Collectors.toList()))
+                    .anyMatch(name -> name.startsWith("snapshot-"));
+        }
+        ConfigurableApplicationContext restarted = start(directory);
+        assertThat(userService(restarted).findById(user.getId()).getLogin()).isEqualTo("before_restart");
+    }
+
+    private ConfigurableApplicationContext start(Path dataDirectory) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--filmorate.storage=memory",
+                        "--filmorate.memory.persistence.enabled=true",
+                        "--filmorate.memory.persistence.dir=" + dataDirectory,
+                        "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID());
+        contexts.add(context);
+        return context;
+    }
+
+    private Path crashCopyOf(Path source) throws IOException {
+        Path copy = Files.createDirectories(directory.resolve("copy-" + contexts.size()));
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+
+    private Film createFilm(ConfigurableApplicationContext context, String name) {
+        return filmService(context).create(new Film(null, name, "Description", LocalDate.of(2000, 1, 1), 100,
+                new Mpa(1, null, null), List.of(new Genre(1, null)), null));
+    }
+
+    private User createUser(ConfigurableApplicationContext context, String login) {
+        return userService(context).createUser(new User(null, login + "@mail.ru", login, null,
+                LocalDate.of(1990, 1, 1)));
+    }
+
+    private FilmService filmService(ConfigurableApplicationContext context) {
+        return context.getBean(FilmService.class);
+    }
+
+    private UserService userService(ConfigurableApplicationContext context) {
+        return context.getBean(UserService.class);
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.filmorate.AsyncDispatch.perform;
+
+// A pooled in-memory database instead of @AutoConfigureTestDatabase, so Hikari pool metrics are bound
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class MetricsTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void shouldExposeEndpointServiceStorageAndPoolMetrics() throws Exception {
+        perform(mockMvc, get("/films/popular"))
+                .andExpect(status().isOk());
+        perform(mockMvc, get("/films/9999"))
+                .andExpect(status().isNotFound());
+
+        perform(mockMvc, get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("uri=\"/films/popular\"")))
+                .andExpect(content().string(containsString("filmorate_service_seconds_bucket{" +
+                        "class=\"FilmService\",exception=\"none\",method=\"findPopular\"")))
+                .andExpect(content().string(containsString("filmorate_storage_seconds_count{" +
+                        "class=\"DatabaseRatingStorage\",exception=\"none\",method=\"findPopular\"")))
+                .andExpect(content().string(containsString("filmorate_service_seconds_count{" +
+                        "class=\"FilmService\",exception=\"ObjectNotFoundException\",method=\"findVersionTag\"")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"films\"")))
+                .andExpect(content().string(containsString("cache_evictions_total{cache=\"films\"")))
+                .andExpect(content().string(containsString("filmorate_bulkhead_executor_queued_tasks{name=\"scans\"")))
+                .andExpect(content().string(containsString("filmorate_bulkhead_queue_wait_seconds_count{" +
+                        "name=\"point-reads\"")))
+                .andExpect(content().string(containsString("filmorate_bulkhead_rejected_total{name=\"writes\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")));
+    }
+}
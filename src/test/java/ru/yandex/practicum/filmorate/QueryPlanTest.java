@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.film.database.DatabaseFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.database.DatabaseRatingStorage;
+import ru.yandex.practicum.filmorate.storage.user.database.impl.DatabaseFriendStorage;
+import ru.yandex.practicum.filmorate.storage.user.database.impl.DatabaseUserStorage;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class QueryPlanTest {
+    private static final MapSqlParameterSource IDS = new MapSqlParameterSource("ids", List.of(1, 2, 3));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void shouldApplyAllMigrations() {
+        List<String> versions = jdbcTemplate.queryForList("SELECT \"version\" FROM \"flyway_schema_history\" " +
+                "WHERE \"success\" AND \"version\" IS NOT NULL ORDER BY \"installed_rank\"", String.class);
+
+        assertThat(versions).containsExactly("1", "2", "3", "4", "5");
+    }
+
+    @Test
+    public void shouldUseIndexesForFilmQueries() {
+        assertIndexed(DatabaseFilmStorage.SQL_SELECT_FILM_IDS_PAGE, 0, 100);
+        assertIndexed(DatabaseFilmStorage.SQL_SELECT_LIVE_FILM_IDS);
+        assertIndexed(DatabaseFilmStorage.SQL_FILM_EXISTS, 1);
+        assertIndexed(DatabaseFilmStorage.SQL_SELECT_FILM_TEXTS);
+        assertIndexed(DatabaseFilmStorage.SQL_SELECT_FILM_BY_ID, 1);
+        assertIndexed(DatabaseFilmStorage.SQL_SELECT_FILM_VERSION, 1);
+        assertIndexed(DatabaseFilmStorage.SQL_SELECT_GENRES_BY_FILM_ID, 1);
+        assertIndexed(DatabaseFilmStorage.SQL_SELECT_LIKES_BY_FILM_ID, 1);
+        assertIndexedNamed(DatabaseFilmStorage.SQL_SELECT_FILMS_BY_IDS);
+        assertIndexedNamed(DatabaseFilmStorage.SQL_SELECT_GENRES_BY_FILM_IDS);
+        assertIndexedNamed(DatabaseFilmStorage.SQL_SELECT_LIKES_BY_FILM_IDS);
+    }
+
+    @Test
+    public void shouldUseIndexesForLikeQueries() {
+        assertIndexed(DatabaseRatingStorage.SQL_RESTORE_LIKE, 1, 1);
+        assertIndexed(DatabaseRatingStorage.SQL_REMOVE_LIKE, 1, 1);
+        assertIndexed(DatabaseRatingStorage.SQL_COUNT_LIKES_OF_ALL_FILMS);
+        assertIndexed(DatabaseRatingStorage.SQL_SELECT_FILM_CATEGORIES);
+        assertIndexed(DatabaseRatingStorage.SQL_SELECT_RECENT_LIKES, Timestamp.from(Instant.now()));
+    }
+
+    @Test
+    public void shouldUseIndexesForUserQueries() {
+        assertIndexed(DatabaseUserStorage.SQL_SELECT_USERS_PAGE, 0, 100);
+        assertIndexed(DatabaseUserStorage.SQL_SELECT_LIVE_USER_IDS);
+        assertIndexed(DatabaseUserStorage.SQL_USER_EXISTS, 1);
+        assertIndexed(DatabaseUserStorage.SQL_SELECT_USER_BY_ID, 1);
+        assertIndexed(DatabaseFriendStorage.SQL_FIND_FRIENDS, 1);
+        assertIndexed(DatabaseFriendStorage.SQL_FIND_FRIENDS_PAGE, 1, 0, 100);
+        assertIndexed(DatabaseFriendStorage.SQL_FIND_COMMON_FRIENDS, 1, 2);
+        assertIndexed(DatabaseFriendStorage.SQL_COUNT_COMMON_FRIENDS, 1, 2);
+        assertIndexed(DatabaseFriendStorage.SQL_CONFIRM_FRIENDSHIP, 1, 2);
+        assertIndexed(DatabaseFriendStorage.SQL_REMOVE_FRIEND, 1, 2);
+        assertIndexed(DatabaseFriendStorage.SQL_SELECT_CONFIRMED_FRIENDSHIPS);
+    }
+
+    private void assertIndexed(String sql, Object... args) {
+        assertPlan(sql, String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args)));
+    }
+
+    private void assertIndexedNamed(String sql) {
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        assertPlan(sql, String.join("\n", namedJdbcTemplate.queryForList("EXPLAIN " + sql, IDS, String.class)));
+    }
+
+    // H2 marks every full table read as "tableScan" in the plan
+    private static void assertPlan(String sql, String plan) {
+        assertThat(plan).as("Plan of %s", sql).doesNotContain("tableScan");
+    }
+}
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.database.RatingDao;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.filmorate.AsyncDispatch.perform;
+import static ru.yandex.practicum.filmorate.SqlStatementMatchers.sqlStatementsAtMost;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class RecommendationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private RecommendationService recommendationService;
+    @Autowired
+    private RatingDao ratingStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Integer> users = new ArrayList<>();
+    private final List<Integer> films = new ArrayList<>();
+
+    // The second user shares two likes with the first, the third shares one, the fourth none
+    @BeforeEach
+    public void createLikes() {
+        for (int i = 0; i < 4; i++) {
+            users.add(userService.createUser(new User(null, "user" + i + "@mail.ru", "user" + i, null,
+                    LocalDate.of(1990, 1, 1))).getId());
+        }
+        for (int i = 0; i < 5; i++) {
+            films.add(filmService.create(new Film(null, "Film " + i, "Description", LocalDate.of(2000, 1, 1),
+                    100, new Mpa(1, null, null), null, null)).getId());
+        }
+        like(0, 0, 1);
+        like(1, 0, 1, 2);
+        like(2, 0, 3);
+        like(3, 4);
+    }
+
+    @Test
+    public void shouldRecommendFilmsOfNearestNeighbours() {
+        assertThat(recommendationService.findRecommendations(users.get(0), 10)).extracting(Film::getId)
+                .containsExactly(films.get(2), films.get(3));
+        assertThat(recommendationService.findRecommendations(users.get(0), 1)).extracting(Film::getId)
+                .containsExactly(films.get(2));
+        assertThat(recommendationService.findRecommendations(users.get(3), 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldDropCachedRecommendationsOnOwnLike() {
+        assertThat(recommendationService.findRecommendations(users.get(0), 10)).extracting(Film::getId)
+                .containsExactly(films.get(2), films.get(3));
+
+        like(0, 2);
+        assertThat(recommendationService.findRecommendations(users.get(0), 10)).extracting(Film::getId)
+                .containsExactly(films.get(3));
+
+        filmService.removeLike(films.get(0), users.get(0));
+        filmService.removeLike(films.get(1), users.get(0));
+        filmService.removeLike(films.get(2), users.get(0));
+        assertThat(recommendationService.findRecommendations(users.get(0), 10)).isEmpty();
+    }
+
+    // Only the recommended films are read, the neighbours come from memory
+    @Test
+    public void shouldServeRecommendationsEndpoint() throws Exception {
+        perform(mockMvc, get("/users/" + users.get(0) + "/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(films.get(2)))
+                .andExpect(jsonPath("$[1].id").value(films.get(3)))
+                .andExpect(sqlStatementsAtMost(3));
+        perform(mockMvc, get("/users/9999/recommendations"))
+                .andExpect(status().isNotFound());
+        perform(mockMvc, get("/users/" + users.get(0) + "/recommendations?count=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Likes and unlikes of one pair race each other, the matrix must end in the state the table is in
+    @Test
+    public void shouldKeepLikeMatrixInStepWithTable() throws Exception {
+        int filmId = films.get(4);
+        int userId = users.get(0);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> toggles = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            boolean liked = i % 2 == 0;
+            toggles.add(pool.submit(() -> {
+                try {
+                    if (liked) {
+                        filmService.addLike(filmId, userId);
+                    } else {
+                        filmService.removeLike(filmId, userId);
+                    }
+                } catch (ObjectNotFoundException e) {
+                    // Unliking a film that is not liked at the moment
+                }
+            }));
+        }
+        for (Future<?> toggle : toggles) {
+            toggle.get();
+        }
+        pool.shutdown();
+
+        boolean likedInTable = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"film_user_like\" " +
+                "WHERE \"film_id\" = ? AND \"user_id\" = ? AND \"deleted_at\" IS NULL", Integer.class,
+                filmId, userId) > 0;
+        assertThat(ratingStorage.findLikedFilms(userId)).contains(films.get(0), films.get(1));
+        assertThat(Arrays.stream(ratingStorage.findLikedFilms(userId)).anyMatch(id -> id == filmId))
+                .isEqualTo(likedInTable);
+    }
+
+    private void like(int user, int... filmIndexes) {
+        for (int film : filmIndexes) {
+            filmService.addLike(films.get(film), users.get(user));
+        }
+    }
+}
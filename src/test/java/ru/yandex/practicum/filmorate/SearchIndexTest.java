@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.SearchIndex;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchIndexTest {
+    private final SearchIndex index = new SearchIndex();
+
+    @Test
+    public void shouldTokenizeCyrillicAndLatinAlike() {
+        assertThat(SearchIndex.tokenize("Ёжик в тумане (1975), Hedgehog-in-the-Fog!"))
+                .containsExactly("ежик", "в", "тумане", "1975", "hedgehog", "in", "the", "fog");
+    }
+
+    @Test
+    public void shouldMatchWholeWordsAndPrefixes() {
+        index.reset(List.of(
+                film(1, "Ёжик в тумане", "Мультфильм Юрия Норштейна"),
+                film(2, "Сказка сказок", "Ещё один мультфильм"),
+                film(3, "Solaris", "Фильм Тарковского")));
+
+        assertThat(index.search("ежик", 10)).containsExactly(1);
+        assertThat(index.search("МУЛЬТ", 10)).containsExactly(1, 2);
+        assertThat(index.search("сказ", 10)).containsExactly(2);
+        assertThat(index.search("solaris тарковского", 10)).containsExactly(3);
+        assertThat(index.search("solaris норштейна", 10)).isEmpty();
+        assertThat(index.search("!!!", 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldForgiveTypoByTrigrams() {
+        index.reset(List.of(
+                film(1, "Сталкер", "Зона исполняет желания"),
+                film(2, "Зеркало", "Воспоминания")));
+
+        assertThat(index.search("стакер", 10)).containsExactly(1);
+        assertThat(index.search("зеркола", 10)).containsExactly(2);
+        assertThat(index.search("ктоэто", 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldRankNameMatchesAboveDescriptionMatches() {
+        index.reset(List.of(
+                film(1, "Дорога", "Про солярис"),
+                film(2, "Солярис", "Про космос"),
+                film(3, "Дом", "Про солярис и солярис")));
+
+        assertThat(index.search("солярис", 10)).containsExactly(2, 3, 1);
+        assertThat(index.search("солярис", 1)).containsExactly(2);
+        assertThat(index.search("про", 10)).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void shouldReplaceWordsOfUpdatedFilm() {
+        index.put(film(1, "Старое название", "Описание"));
+        index.put(film(1, "Новое название", "Описание"));
+
+        assertThat(index.search("старое", 10)).isEmpty();
+        assertThat(index.search("новое", 10)).containsExactly(1);
+        assertThat(index.search("название", 10)).containsExactly(1);
+    }
+
+    private static Film film(int id, String name, String description) {
+        return new Film(id, name, description, null, 0, null, null, null);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.ResultMatcher;
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.metrics.SqlStatementCountFilter.SQL_STATEMENT_COUNT_HEADER;
+
+/**
+ * Query budgets for MockMvc tests, e.g. {@code .andExpect(sqlStatementsAtMost(3))}.
+ * Reads the statement count reported by SqlStatementCountFilter.
+ */
+public final class SqlStatementMatchers {
+
+    private SqlStatementMatchers() {
+    }
+
+    public static ResultMatcher sqlStatementsAtMost(int max) {
+        return result -> assertThat(sqlStatements(result.getRequest(), result.getResponse().getHeader(
+                SQL_STATEMENT_COUNT_HEADER))).as("SQL statements of %s %s", result.getRequest().getMethod(),
+                result.getRequest().getRequestURI()).isLessThanOrEqualTo(max);
+    }
+
+    public static ResultMatcher sqlStatements(int expected) {
+        return result -> assertThat(sqlStatements(result.getRequest(), result.getResponse().getHeader(
+                SQL_STATEMENT_COUNT_HEADER))).as("SQL statements of %s %s", result.getRequest().getMethod(),
+                result.getRequest().getRequestURI()).isEqualTo(expected);
+    }
+
+    private static int sqlStatements(MockHttpServletRequest request, String header) {
+        assertThat(header).as("%s header of %s", SQL_STATEMENT_COUNT_HEADER, request.getRequestURI()).isNotNull();
+        return Integer.parseInt(header);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.storage.user.Timeline;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimelineTest {
+    private final Timeline timeline = new Timeline(3);
+
+    @Test
+    public void shouldKeepNewestEventsInOrder() {
+        add(1);
+        add(3);
+        add(2);
+        add(5);
+        add(4);
+
+        assertThat(timeline.newest(Integer.MAX_VALUE, 10)).extracting(FeedEvent::getEventId)
+                .containsExactly(5, 4, 3);
+        // Older than everything kept
+        add(1);
+        assertThat(timeline.newest(Integer.MAX_VALUE, 10)).extracting(FeedEvent::getEventId)
+                .containsExactly(5, 4, 3);
+    }
+
+    @Test
+    public void shouldPageBeforeCursor() {
+        add(1);
+        add(2);
+        add(3);
+
+        assertThat(timeline.newest(3, 1)).extracting(FeedEvent::getEventId).containsExactly(2);
+        assertThat(timeline.newest(2, 10)).extracting(FeedEvent::getEventId).containsExactly(1);
+        assertThat(timeline.newest(1, 10)).isEmpty();
+    }
+
+    private void add(int eventId) {
+        timeline.add(new FeedEvent(eventId, 0, 1, FeedEventType.LIKE, eventId));
+    }
+}
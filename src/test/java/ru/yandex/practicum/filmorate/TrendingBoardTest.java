@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.TrendingBoard;
+import ru.yandex.practicum.filmorate.storage.film.TrendingWindow;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrendingBoardTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-03-01T12:00:00Z"));
+    private final TrendingBoard board = new TrendingBoard(clock);
+
+    @Test
+    public void shouldRankByLikesWithinEachWindow() {
+        board.record(1, 1);
+        board.record(2, 1);
+        board.record(2, 1);
+        clock.advance(Duration.ofHours(2));
+        board.record(3, 1);
+
+        assertThat(board.top(TrendingWindow.HOUR, 10)).containsExactly(3);
+        assertThat(board.top(TrendingWindow.DAY, 10)).containsExactly(2, 1, 3);
+        assertThat(board.top(TrendingWindow.DAY, 2)).containsExactly(2, 1);
+    }
+
+    @Test
+    public void shouldDropLikesLeavingWindow() {
+        board.record(1, 1);
+        clock.advance(Duration.ofMinutes(30));
+        board.record(2, 1);
+
+        clock.advance(Duration.ofMinutes(31));
+        assertThat(board.top(TrendingWindow.HOUR, 10)).containsExactly(2);
+
+        clock.advance(Duration.ofDays(1));
+        assertThat(board.top(TrendingWindow.HOUR, 10)).isEmpty();
+        assertThat(board.top(TrendingWindow.DAY, 10)).isEmpty();
+        assertThat(board.top(TrendingWindow.WEEK, 10)).containsExactly(1, 2);
+
+        clock.advance(Duration.ofDays(7));
+        assertThat(board.top(TrendingWindow.WEEK, 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldCountUnlikesAgainstWindow() {
+        board.record(1, 1);
+        board.record(2, 1);
+        board.record(2, 1);
+        board.record(2, -1);
+        board.record(1, -1);
+
+        assertThat(board.top(TrendingWindow.HOUR, 10)).containsExactly(2);
+    }
+
+    @Test
+    public void shouldPlaceRecordedLikesInTheirBuckets() {
+        board.record(1, 1, clock.instant().minus(Duration.ofHours(3)));
+        board.record(2, 1, clock.instant().minus(Duration.ofMinutes(10)));
+        board.record(3, 1, clock.instant().minus(Duration.ofDays(8)));
+
+        assertThat(board.top(TrendingWindow.HOUR, 10)).containsExactly(2);
+        assertThat(board.top(TrendingWindow.WEEK, 10)).containsExactly(1, 2);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
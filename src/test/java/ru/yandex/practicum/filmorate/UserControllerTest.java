@@ -7,8 +7,14 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static ru.yandex.practicum.filmorate.SqlStatementMatchers.sqlStatements;
+import static ru.yandex.practicum.filmorate.AsyncDispatch.perform;
+import static ru.yandex.practicum.filmorate.SqlStatementMatchers.sqlStatementsAtMost;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.MethodOrderer;
@@ -21,6 +27,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @SpringBootTest
@@ -43,7 +50,7 @@ public class UserControllerTest {
         int expectedId = 1;
         String body = createJson(login, name, email, birthday);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -63,7 +70,7 @@ public class UserControllerTest {
         String birthday = "2001-03-08";
         String body = createJson(login, name, email, birthday);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -78,7 +85,7 @@ public class UserControllerTest {
         String birthday = "2001-03-08";
         String body = createJson(login, name, email, birthday);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -93,7 +100,7 @@ public class UserControllerTest {
         String birthday = "2999-03-08";
         String body = createJson(login, name, email, birthday);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -109,7 +116,7 @@ public class UserControllerTest {
         String birthday = "2000-01-01";
         String body = createJson(id, login, name, email, birthday);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -130,7 +137,7 @@ public class UserControllerTest {
         String birthday = "2011-11-11";
         String body = createJson(id, login, name, email, birthday);
 
-        mockMvc.perform(put(ENDPOINT)
+        perform(mockMvc, put(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -145,7 +152,7 @@ public class UserControllerTest {
         String email = "new@mail.dev";
         String birthday = "2000-01-01";
 
-        mockMvc.perform(get(ENDPOINT))
+        perform(mockMvc, get(ENDPOINT))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -166,7 +173,7 @@ public class UserControllerTest {
         // null name will be replaced with login:
         String body = createJson(login, null, email, birthday);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -188,7 +195,7 @@ public class UserControllerTest {
 
         String body = createJson(login, name, email, birthday);
 
-        mockMvc.perform(post(ENDPOINT)
+        perform(mockMvc, post(ENDPOINT)
                         .contentType(CONTENT_TYPE)
                         .content(body))
                 .andDo(print())
@@ -208,7 +215,7 @@ public class UserControllerTest {
         String email = "new@mail.dev";
         String birthday = "2000-01-01";
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id))
@@ -222,7 +229,7 @@ public class UserControllerTest {
     public void test011ShouldReturnUserNotFound() throws Exception {
         String id = "9999";
 
-        mockMvc.perform(get(ENDPOINT + "/" + id))
+        perform(mockMvc, get(ENDPOINT + "/" + id))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
@@ -232,7 +239,7 @@ public class UserControllerTest {
         int id1 = 1;
         int id2 = 2;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
@@ -247,7 +254,7 @@ public class UserControllerTest {
         // id1 becomes a friend for id2,
         // but id2 isn't a friend for id1 until he confirms it
 
-        mockMvc.perform(put(ENDPOINT + "/" + id1 + "/friends/" + id2))
+        perform(mockMvc, put(ENDPOINT + "/" + id1 + "/friends/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk());
     }
@@ -257,7 +264,7 @@ public class UserControllerTest {
         int id1 = 1;
         int id2 = 9999;
 
-        mockMvc.perform(put(ENDPOINT + "/" + id1 + "/friends/" + id2))
+        perform(mockMvc, put(ENDPOINT + "/" + id1 + "/friends/" + id2))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
@@ -271,7 +278,7 @@ public class UserControllerTest {
         String email = "friend@vk.com";
         String birthday = "1917-11-07";
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends"))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -286,7 +293,7 @@ public class UserControllerTest {
     public void test016ShouldReturnEmptyAsFriendshipRequiresConfirmation() throws Exception {
         int id1 = 2;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends"))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
@@ -299,7 +306,7 @@ public class UserControllerTest {
 
         // This request is a confirmation of friendship between id1 and id2
 
-        mockMvc.perform(put(ENDPOINT + "/" + id1 + "/friends/" + id2))
+        perform(mockMvc, put(ENDPOINT + "/" + id1 + "/friends/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk());
     }
@@ -309,7 +316,7 @@ public class UserControllerTest {
         int id1 = 1;
         int id2 = 2;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
@@ -320,7 +327,7 @@ public class UserControllerTest {
         int id1 = 1;
         int id2 = 3;
 
-        mockMvc.perform(put(ENDPOINT + "/" + id1 + "/friends/" + id2))
+        perform(mockMvc, put(ENDPOINT + "/" + id1 + "/friends/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk());
     }
@@ -331,7 +338,7 @@ public class UserControllerTest {
         int friendId1 = 2;
         int friendId2 = 3;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends"))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
@@ -343,7 +350,7 @@ public class UserControllerTest {
         int id1 = 2;
         int id2 = 3;
 
-        mockMvc.perform(put(ENDPOINT + "/" + id1 + "/friends/" + id2))
+        perform(mockMvc, put(ENDPOINT + "/" + id1 + "/friends/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk());
     }
@@ -354,7 +361,7 @@ public class UserControllerTest {
         int friendId1 = 1;
         int friendId2 = 3;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends"))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
@@ -371,7 +378,7 @@ public class UserControllerTest {
         String birthday = "2006-06-06";
         int commonFriendId = 3;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -382,12 +389,23 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$[0].birthday").value(birthday));
     }
 
+    @Test
+    public void test022_1ShouldCountCommonFriendsOfUserId1AndUserId2() throws Exception {
+        int id1 = 1;
+        int id2 = 2;
+
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends/common/" + id2 + "/count"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+    }
+
     @Test
     public void test023ShouldDeleteFriendshipBetweenUserId1AndUserId2() throws Exception {
         int id1 = 1;
         int id2 = 2;
 
-        mockMvc.perform(delete(ENDPOINT + "/" + id1 + "/friends/" + id2))
+        perform(mockMvc, delete(ENDPOINT + "/" + id1 + "/friends/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk());
     }
@@ -397,7 +415,7 @@ public class UserControllerTest {
         int id1 = 1;
         int friendId = 3;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends"))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -409,7 +427,7 @@ public class UserControllerTest {
         int id1 = 2;
         int friendId = 3;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends"))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -426,7 +444,7 @@ public class UserControllerTest {
         String birthday = "2006-06-06";
         int commonFriendId = 3;
 
-        mockMvc.perform(get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
+        perform(mockMvc, get(ENDPOINT + "/" + id1 + "/friends/common/" + id2))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
@@ -437,6 +455,126 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$[0].birthday").value(birthday));
     }
 
+    @Test
+    public void test027ShouldReturnUsersPageByPage() throws Exception {
+        perform(mockMvc, get(ENDPOINT + "?limit=2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+
+        perform(mockMvc, get(ENDPOINT + "?after=2&limit=2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(3));
+    }
+
+    @Test
+    public void test028ShouldReturnFriendsAfterCursor() throws Exception {
+        perform(mockMvc, get(ENDPOINT + "/1/friends?after=3"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void test029ShouldImportUsersInBatchAndReportEachItem() throws Exception {
+        List<Map<String, String>> users = List.of(
+                createJsonMap("batch_one", "", "one@batch.com", "2000-01-01"),
+                createJsonMap("batch two", "Bad login", "two@batch.com", "2000-01-01"),
+                createJsonMap("batch_three", "Third", "three@batch.com", "2000-01-01"));
+
+        perform(mockMvc, post(ENDPOINT + "/batch")
+                        .contentType(CONTENT_TYPE)
+                        .content(new ObjectMapper().writeValueAsString(users)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(jsonPath("$[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$[2].status").value("CREATED"))
+                .andExpect(jsonPath("$[2].id").value(5));
+
+        perform(mockMvc, get(ENDPOINT + "/4"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.login").value("batch_one"))
+                .andExpect(jsonPath("$.name").value("batch_one"));
+    }
+
+    @Test
+    public void test030ShouldWriteFriendshipsWithoutLoadingUsers() throws Exception {
+        // Users 4 and 5 come from the batch import, their ids are indexed once it commits
+        perform(mockMvc, put(ENDPOINT + "/4/friends/5"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(3));
+
+        perform(mockMvc, delete(ENDPOINT + "/4/friends/5"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(sqlStatementsAtMost(2));
+
+        // An unknown id costs the one lookup that confirms it is missing
+        perform(mockMvc, put(ENDPOINT + "/4/friends/9999"))
+                .andDo(print())
+                .andExpect(status().isNotFound())
+                .andExpect(sqlStatementsAtMost(1));
+    }
+
+    @Test
+    public void test031ShouldSuggestFriendsOfFriendsFromMemory() throws Exception {
+        // User 1 has user 3 as a friend, who gets users 4 and 5 as friends
+        perform(mockMvc, put(ENDPOINT + "/3/friends/4"))
+                .andExpect(status().isOk());
+        perform(mockMvc, put(ENDPOINT + "/3/friends/5"))
+                .andExpect(status().isOk());
+
+        perform(mockMvc, get(ENDPOINT + "/1/suggestions"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].userId").value(4))
+                .andExpect(jsonPath("$[0].mutualFriends").value(1))
+                .andExpect(jsonPath("$[1].userId").value(5))
+                .andExpect(sqlStatements(0));
+        perform(mockMvc, get(ENDPOINT + "/1/suggestions?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        perform(mockMvc, get(ENDPOINT + "/9999/suggestions"))
+                .andExpect(status().isNotFound());
+        perform(mockMvc, get(ENDPOINT + "/1/suggestions?count=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void test032ShouldSuggestThroughFriendAddedAgainOnly() throws Exception {
+        // User 1 drops user 3 and the suggestions through user 3 go with the friendship
+        perform(mockMvc, delete(ENDPOINT + "/1/friends/3"))
+                .andExpect(status().isOk());
+        perform(mockMvc, get(ENDPOINT + "/1/suggestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        perform(mockMvc, delete(ENDPOINT + "/1/friends/3"))
+                .andExpect(status().isNotFound());
+
+        perform(mockMvc, put(ENDPOINT + "/1/friends/3"))
+                .andExpect(status().isOk());
+        perform(mockMvc, get(ENDPOINT + "/1/suggestions"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].userId", contains(4, 5)));
+        perform(mockMvc, get(ENDPOINT + "/1/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3)));
+    }
+
     private String createJson(String id, String login, String name, String email, String birthday)
             throws JsonProcessingException {
         Map<String, String> object = createJsonMap(login, name, email, birthday);
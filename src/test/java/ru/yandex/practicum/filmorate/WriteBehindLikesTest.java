@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.database.DatabaseRatingStorage;
+import java.time.LocalDate;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The flusher never runs on its own here, every write is triggered by the test
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.capacity=3",
+        "filmorate.likes.write-behind.flush-interval=1h"
+})
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class WriteBehindLikesTest {
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DatabaseRatingStorage ratingStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Film film;
+    private User user;
+
+    @BeforeEach
+    public void createFilmAndUser() {
+        film = filmService.create(new Film(null, "Premiere", "Description", LocalDate.of(2000, 1, 1), 100,
+                new Mpa(1, null, null), List.of(), null));
+        user = createUser("fan");
+    }
+
+    @Test
+    public void shouldCollapseChangesOfPairAndWriteThemOnFlush() {
+        filmService.addLike(film.getId(), user.getId());
+        filmService.removeLike(film.getId(), user.getId());
+        filmService.addLike(film.getId(), user.getId());
+        filmService.addLike(film.getId(), user.getId());
+
+        assertThat(filmService.findPopular(1)).extracting(Film::getId).containsExactly(film.getId());
+        assertThat(activeLikes()).isZero();
+
+        ratingStorage.flush();
+        assertThat(activeLikes()).isEqualTo(1);
+        assertThat(filmService.findById(film.getId()).getUserIdLikes()).containsExactly(user.getId());
+
+        filmService.removeLike(film.getId(), user.getId());
+        assertThatThrownBy(() -> filmService.removeLike(film.getId(), user.getId()))
+                .isInstanceOf(ObjectNotFoundException.class);
+
+        ratingStorage.flush();
+        assertThat(activeLikes()).isZero();
+    }
+
+    @Test
+    public void shouldFlushInCallerThreadWhenQueueIsFull() {
+        for (int i = 0; i < 3; i++) {
+            filmService.addLike(film.getId(), createUser("fan" + i).getId());
+        }
+        assertThat(activeLikes()).isZero();
+
+        filmService.addLike(film.getId(), user.getId());
+        assertThat(activeLikes()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldKeepLikeAndRetryBatchWhenCallerFlushFails() {
+        int doomedId = createUser("doomed").getId();
+        jdbcTemplate.update("ALTER TABLE \"film_user_like\" ADD CONSTRAINT \"chk_test_doomed\" " +
+                "CHECK (\"user_id\" <> " + doomedId + ")");
+        filmService.addLike(film.getId(), doomedId);
+        for (int i = 0; i < 2; i++) {
+            filmService.addLike(film.getId(), createUser("fan" + i).getId());
+        }
+
+        filmService.addLike(film.getId(), user.getId());
+        assertThat(activeLikes()).isZero();
+        assertThat(filmService.findPopular(1)).extracting(Film::getId).containsExactly(film.getId());
+
+        jdbcTemplate.update("ALTER TABLE \"film_user_like\" DROP CONSTRAINT \"chk_test_doomed\"");
+        ratingStorage.flush();
+        assertThat(activeLikes()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldFlushPendingLikesOnShutdown() {
+        filmService.addLike(film.getId(), user.getId());
+
+        ratingStorage.flushPendingLikes();
+        assertThat(activeLikes()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRejectLikeOfUnknownUser() {
+        assertThatThrownBy(() -> filmService.addLike(film.getId(), 9999))
+                .isInstanceOf(ObjectNotFoundException.class);
+    }
+
+    private User createUser(String login) {
+        return userService.createUser(new User(null, login + "@mail.ru", login, null, LocalDate.of(1990, 1, 1)));
+    }
+
+    private int activeLikes() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"film_user_like\" " +
+                "WHERE \"film_id\" = ? AND \"deleted_at\" IS NULL", Integer.class, film.getId());
+        return count == null ? 0 : count;
+    }
+}